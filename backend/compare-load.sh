@@ -0,0 +1,50 @@
+#!/usr/bin/env bash
+# Runs the load-test profile once per application configuration and prints the reports together.
+# Each variant is a name and the JVM arguments the application starts with, space separated,
+# arguments after -- go to every run:
+#
+#   ./compare-load.sh platform=-Dspring.threads.virtual.enabled=false \
+#                     "virtual=-Dspring.threads.virtual.enabled=true -Xmx512m" -- -Dload.rate=150
+#
+# reactive=-Dspring.main.web-application-type=reactive starts the WebFlux and R2DBC stack instead.
+#
+# Reports and logs are kept in target/load-compare/<name>[-sweep].json and .log. MVN overrides the Maven
+# command, mvnw by default.
+set -u
+cd "$(dirname "$0")"
+mvn=${MVN:-sh mvnw}
+mkdir -p target/load-compare
+
+variants=()
+while [ $# -gt 0 ] && [ "$1" != "--" ]; do
+  variants+=("$1")
+  shift
+done
+[ $# -gt 0 ] && shift
+
+failed=0
+for variant in "${variants[@]}"; do
+  name=${variant%%=*}
+  arguments=${variant#*=}
+  echo "== $name: $arguments"
+  rm -f target/load-test/customer-load*.json
+  # the application keeps no state between runs that matters, each run seeds its own customers
+  if ! $mvn -B -Pload-test verify "-Dspring-boot.run.jvmArguments=$arguments" "$@" \
+      > "target/load-compare/$name.log" 2>&1; then
+    echo "   failed, see target/load-compare/$name.log"
+    failed=1
+  fi
+  # customer-load.json for a fixed rate, customer-load-sweep.json for load.rates
+  for report in target/load-test/customer-load*.json; do
+    [ -e "$report" ] && cp "$report" "target/load-compare/$name${report#target/load-test/customer-load}"
+  done
+done
+
+for variant in "${variants[@]}"; do
+  name=${variant%%=*}
+  echo
+  echo "== $name"
+  # the report tables, the application logs to the same output
+  grep -E '^(route |rate |highest |connection |[A-Za-z0-9.]+ +[0-9.]+ +[0-9]+ +[0-9]+ )' "target/load-compare/$name.log"
+done
+exit $failed
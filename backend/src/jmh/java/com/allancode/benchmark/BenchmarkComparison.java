@@ -0,0 +1,132 @@
+package com.allancode.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files benchmark by benchmark, on the primary score and on the bytes
+ * allocated per operation. A metric regresses when it is worse than the baseline by more than the
+ * threshold, in percent, and the two confidence intervals do not overlap.
+ * <p>
+ * Standalone: {@code BenchmarkComparison <baseline.json> <current.json> [threshold]}.
+ */
+public final class BenchmarkComparison {
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    // allocation below this many bytes per operation is measurement noise, not a regression
+    private static final double ALLOCATION_NOISE_BYTES = 16;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        List<Row> rows = compare(Path.of(args[0]), Path.of(args[1]), threshold);
+        print(rows, threshold);
+        if (rows.stream().anyMatch(Row::regression)) {
+            System.exit(1);
+        }
+    }
+
+    public static List<Row> compare(Path baseline, Path current, double threshold) throws IOException {
+        Map<String, JsonNode> before = index(baseline);
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : index(current).entrySet()) {
+            JsonNode old = before.get(entry.getKey());
+            if (old == null) {
+                continue;
+            }
+            JsonNode now = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(now.path("mode").asText());
+            JsonNode score = now.path("primaryMetric");
+            rows.add(row(entry.getKey(), "score", score.path("scoreUnit").asText(),
+                    old.path("primaryMetric"), score, higherIsBetter, threshold, 0));
+            JsonNode oldAllocation = secondary(old, ALLOCATION);
+            JsonNode allocation = secondary(now, ALLOCATION);
+            if (oldAllocation != null && allocation != null) {
+                rows.add(row(entry.getKey(), "alloc", allocation.path("scoreUnit").asText(),
+                        oldAllocation, allocation, false, threshold, ALLOCATION_NOISE_BYTES));
+            }
+        }
+        return rows;
+    }
+
+    public static void print(List<Row> rows, double threshold) {
+        System.out.printf("%nComparison with baseline, regression threshold %.1f%%%n", threshold);
+        for (Row row : rows) {
+            System.out.printf("%-72s %-5s %14.3f %14.3f %-12s %+8.1f%%%s%n",
+                    row.benchmark(), row.metric(), row.baseline(), row.current(), row.unit(), row.change(),
+                    row.regression() ? "  REGRESSION" : "");
+        }
+    }
+
+    private static Row row(String benchmark, String metric, String unit, JsonNode before, JsonNode after,
+                           boolean higherIsBetter, double threshold, double noise) {
+        double baseline = before.path("score").asDouble();
+        double current = after.path("score").asDouble();
+        // the error is NaN when a run had too few iterations for an interval
+        double margin = errorOf(before) + errorOf(after) + noise;
+        double change = baseline == 0 ? (current == 0 ? 0 : 100) : (current - baseline) / baseline * 100;
+        boolean worse = higherIsBetter ? change < -threshold : change > threshold;
+        boolean regression = worse && Math.abs(current - baseline) > margin;
+        return new Row(benchmark, metric, unit, baseline, current, change, regression);
+    }
+
+    private static double errorOf(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble();
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /**
+     * Results keyed by benchmark name without its package, followed by its parameters.
+     */
+    private static Map<String, JsonNode> index(Path results) throws IOException {
+        Map<String, JsonNode> index = new LinkedHashMap<>();
+        for (JsonNode result : OBJECT_MAPPER.readTree(results.toFile())) {
+            String benchmark = result.path("benchmark").asText();
+            int method = benchmark.lastIndexOf('.');
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', method - 1) + 1));
+            Map<String, String> params = new TreeMap<>();
+            result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            index.put(key.toString(), result);
+        }
+        return index;
+    }
+
+    private static JsonNode secondary(JsonNode result, String metric) {
+        // older JMH versions prefix secondary metric names with a middle dot
+        Iterator<Map.Entry<String, JsonNode>> metrics = result.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> entry = metrics.next();
+            if (entry.getKey().endsWith(metric)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public record Row(
+            String benchmark,
+            String metric,
+            String unit,
+            double baseline,
+            double current,
+            double change,
+            boolean regression
+    ) {
+    }
+}
@@ -0,0 +1,94 @@
+package com.allancode.benchmark;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import javax.sql.DataSource;
+
+/**
+ * A migrated Postgres database for the benchmarks that go through the database. A throwaway
+ * container is started unless {@code jmh.jdbc.url}, {@code jmh.jdbc.username} and
+ * {@code jmh.jdbc.password} point at an existing one, which the benchmarks empty and refill, so it
+ * must not hold anything worth keeping.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+    private final PostgreSQLContainer<?> container;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final HikariDataSource dataSource;
+
+    private BenchmarkDatabase(PostgreSQLContainer<?> container, String url, String username, String password) {
+        this.container = container;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        this.dataSource = new HikariDataSource(config);
+    }
+
+    public static BenchmarkDatabase start() {
+        String url = System.getProperty("jmh.jdbc.url", "");
+        BenchmarkDatabase database;
+        if (url.isBlank()) {
+            PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:latest");
+            container.start();
+            database = new BenchmarkDatabase(container,
+                    container.getJdbcUrl(), container.getUsername(), container.getPassword());
+        } else {
+            database = new BenchmarkDatabase(null, url,
+                    System.getProperty("jmh.jdbc.username", "postgres"),
+                    System.getProperty("jmh.jdbc.password", ""));
+        }
+        Flyway.configure().dataSource(database.dataSource).load().migrate();
+        database.jdbcTemplate().execute("TRUNCATE customer");
+        return database;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Inserts {@code count} customers in one statement, named and aged like the in-memory
+     * benchmarks' customers.
+     */
+    public void insertCustomers(int count) {
+        jdbcTemplate().update("""
+                INSERT INTO customer(name, email, age)
+                SELECT 'customer ' || i, 'customer' || i || '@example.com', 18 + i % 60
+                FROM generate_series(0, ? - 1) AS i
+                """, count);
+        jdbcTemplate().execute("VACUUM ANALYZE customer");
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
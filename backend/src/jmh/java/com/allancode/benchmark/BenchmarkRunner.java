@@ -0,0 +1,51 @@
+package com.allancode.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks with the gc profiler and writes the results as JSON. When a baseline
+ * result file is given the run is compared against it and fails on any regression. Configured
+ * through system properties, see the benchmark profile in the pom.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path result = Path.of(System.getProperty("jmh.result", "target/jmh-result.json"));
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", ".*Benchmark.*"))
+                .forks(Integer.getInteger("jmh.forks", 1))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString());
+        // name=value,value;name=value overrides the @Param values, e.g. size=100,10000
+        for (String param : System.getProperty("jmh.params", "").split(";")) {
+            if (param.isBlank()) {
+                continue;
+            }
+            String[] nameAndValues = param.split("=", 2);
+            options.param(nameAndValues[0].trim(), nameAndValues[1].trim().split("\\s*,\\s*"));
+        }
+        new Runner(options.build()).run();
+
+        String baseline = System.getProperty("jmh.baseline", "");
+        if (baseline.isBlank()) {
+            return;
+        }
+        double threshold = Double.parseDouble(System.getProperty("jmh.threshold", "10"));
+        List<BenchmarkComparison.Row> rows = BenchmarkComparison.compare(Path.of(baseline), result, threshold);
+        BenchmarkComparison.print(rows, threshold);
+        if (rows.stream().anyMatch(BenchmarkComparison.Row::regression)) {
+            System.exit(1);
+        }
+    }
+}
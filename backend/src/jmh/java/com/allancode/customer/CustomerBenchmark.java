@@ -0,0 +1,67 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer equals and hashCode, alone and as hash set keys. Lookups use equal copies, not the
+ * stored instances, so equals cannot short-circuit on identity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerBenchmark {
+    @Param({"100", "10000"})
+    int size;
+
+    private Customer[] customers;
+    private Customer[] copies;
+    private Set<Customer> set;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        customers = new Customer[size];
+        copies = new Customer[size];
+        for (int i = 0; i < size; i++) {
+            customers[i] = new Customer(i, "customer " + i, "customer" + i + "@example.com", 18 + i % 60);
+            copies[i] = new Customer(i, "customer " + i, "customer" + i + "@example.com", 18 + i % 60);
+        }
+        set = new HashSet<>(Set.of(customers));
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return customers[next()].hashCode();
+    }
+
+    @Benchmark
+    public boolean equalsCopy() {
+        int i = next();
+        return customers[i].equals(copies[i]);
+    }
+
+    @Benchmark
+    public boolean hashSetContains() {
+        return set.contains(copies[next()]);
+    }
+
+    private int next() {
+        next = next + 1 == size ? 0 : next + 1;
+        return next;
+    }
+}
@@ -0,0 +1,157 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Lookups against the List backend, with keys drawn at random so the maps are not walked in
+ * insertion order. The listScan benchmarks run the same lookups against {@link ListScan}, the
+ * ArrayList the backend used to scan, as the baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerDataAccessServiceBenchmark {
+    private static final int KEYS = 1024;
+    private static final int PAGE_SIZE = 50;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    private CustomerDataAccessService underTest;
+    private ListScan listScan;
+    private final Integer[] ids = new Integer[KEYS];
+    private final String[] emails = new String[KEYS];
+    private final List<List<Integer>> idBatches = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        underTest = new CustomerDataAccessService();
+        List<Customer> customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(new Customer("customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        underTest.insertCustomers(customers);
+        List<Customer> stored = underTest.selectAllCustomers();
+        listScan = new ListScan(stored);
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            Customer customer = stored.get(random.nextInt(stored.size()));
+            ids[i] = customer.getId();
+            emails[i] = customer.getEmail();
+        }
+        for (int i = 0; i < KEYS / BATCH_SIZE; i++) {
+            List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                // every other id is missing
+                batch.add(j % 2 == 0 ? stored.get(random.nextInt(stored.size())).getId() : -j);
+            }
+            idBatches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return underTest.selectCustomerById(ids[next()]);
+    }
+
+    @Benchmark
+    public boolean existsCustomerWithEmail() {
+        return underTest.existsCustomerWithEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomerPage() {
+        return underTest.selectCustomerPage(ids[next()], PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Set<Integer> selectExistingIds() {
+        return underTest.selectExistingIds(idBatches.get(next() % idBatches.size()));
+    }
+
+    @Benchmark
+    public Optional<Customer> listScanSelectCustomerById() {
+        return listScan.selectCustomerById(ids[next()]);
+    }
+
+    @Benchmark
+    public boolean listScanExistsCustomerWithEmail() {
+        return listScan.existsCustomerWithEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public List<Customer> listScanSelectCustomerPage() {
+        return listScan.selectCustomerPage(ids[next()], PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Set<Integer> listScanSelectExistingIds() {
+        return listScan.selectExistingIds(idBatches.get(next() % idBatches.size()));
+    }
+
+    private int next() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    /**
+     * The lookups of the List backend before it was indexed, each a stream over an ArrayList.
+     */
+    static final class ListScan {
+        private final List<Customer> customers;
+
+        ListScan(List<Customer> customers) {
+            this.customers = new ArrayList<>(customers);
+        }
+
+        Optional<Customer> selectCustomerById(Integer id) {
+            return customers.stream()
+                    .filter(customer -> customer.getId().equals(id))
+                    .findFirst();
+        }
+
+        boolean existsCustomerWithEmail(String email) {
+            return customers.stream()
+                    .anyMatch(c -> c.getEmail().equals(email));
+        }
+
+        List<Customer> selectCustomerPage(Integer afterId, int limit) {
+            return customers.stream()
+                    .filter(customer -> customer.getId() > afterId)
+                    .sorted(Comparator.comparing(Customer::getId))
+                    .limit(limit)
+                    .toList();
+        }
+
+        // the scan the old selectExistingEmails did, over ids
+        Set<Integer> selectExistingIds(Collection<Integer> ids) {
+            return customers.stream()
+                    .map(Customer::getId)
+                    .filter(ids::contains)
+                    .collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.allancode.customer;
+
+import com.allancode.benchmark.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Existence checks against Postgres, one key per call with the EXISTS probes of the JDBC and JPA
+ * backends and with the count(id) query they replaced, and a batch of 1000 keys in one = ANY call
+ * against 1000 single probes. Half of the keys exist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerExistsBenchmark {
+    private static final int KEYS = 1024;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"100000"})
+    int size;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private CustomerJDBCDataAccessService jdbc;
+    private CustomerJPADataAccessService jpa;
+    private CountQueries count;
+    private final String[] emails = new String[KEYS];
+    private final Integer[] ids = new Integer[KEYS];
+    private List<String> emailBatch;
+    private List<Integer> idBatch;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start();
+        database.insertCustomers(size);
+        context = JpaBenchmarkApplication.start(database, Map.of());
+        jdbc = new CustomerJDBCDataAccessService(database.jdbcTemplate(), new CustomerRowMapper());
+        jpa = new CustomerJPADataAccessService(context.getBean(CustomerRepository.class));
+        count = new CountQueries(database.jdbcTemplate());
+
+        Integer firstId = database.jdbcTemplate().queryForObject("SELECT min(id) FROM customer", Integer.class);
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            // customers 0 to size - 1 exist, the ones past them do not
+            int n = random.nextInt(size * 2);
+            emails[i] = "customer" + n + "@example.com";
+            ids[i] = firstId + n;
+        }
+        emailBatch = List.of(emails).subList(0, BATCH_SIZE);
+        idBatch = List.of(ids).subList(0, BATCH_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    public boolean jdbcExistsCustomerWithEmail() {
+        return jdbc.existsCustomerWithEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public boolean jpaExistsCustomerWithEmail() {
+        return jpa.existsCustomerWithEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public boolean countExistsCustomerWithEmail() {
+        return count.existsCustomerWithEmail(emails[next()]);
+    }
+
+    @Benchmark
+    public boolean jdbcExistsCustomerWithId() {
+        return jdbc.existsCustomerWithId(ids[next()]);
+    }
+
+    @Benchmark
+    public boolean jpaExistsCustomerWithId() {
+        return jpa.existsCustomerWithId(ids[next()]);
+    }
+
+    @Benchmark
+    public boolean countExistsCustomerWithId() {
+        return count.existsCustomerWithId(ids[next()]);
+    }
+
+    @Benchmark
+    public Set<String> jdbcSelectExistingEmails() {
+        return jdbc.selectExistingEmails(emailBatch);
+    }
+
+    @Benchmark
+    public Set<String> jpaSelectExistingEmails() {
+        return jpa.selectExistingEmails(emailBatch);
+    }
+
+    @Benchmark
+    public List<String> jdbcExistsCustomerWithEmailOneByOne() {
+        List<String> existing = new ArrayList<>();
+        for (String email : emailBatch) {
+            if (jdbc.existsCustomerWithEmail(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
+    }
+
+    @Benchmark
+    public Set<Integer> jdbcSelectExistingIds() {
+        return jdbc.selectExistingIds(idBatch);
+    }
+
+    @Benchmark
+    public Set<Integer> jpaSelectExistingIds() {
+        return jpa.selectExistingIds(idBatch);
+    }
+
+    @Benchmark
+    public List<Integer> jdbcExistsCustomerWithIdOneByOne() {
+        List<Integer> existing = new ArrayList<>();
+        for (Integer id : idBatch) {
+            if (jdbc.existsCustomerWithId(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    private int next() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    /**
+     * The count(id) existence checks the JDBC backend ran before the EXISTS probes.
+     */
+    static final class CountQueries {
+        private final JdbcTemplate jdbcTemplate;
+
+        CountQueries(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        boolean existsCustomerWithEmail(String email) {
+            var sql = """
+                    SELECT count(id)
+                    FROM customer
+                    WHERE email = ?
+                    """;
+            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, email);
+            return count != null && count > 0;
+        }
+
+        boolean existsCustomerWithId(Integer id) {
+            var sql = """
+                    SELECT count(id)
+                    FROM customer
+                    WHERE id = ?
+                    """;
+            Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
+            return count != null && count > 0;
+        }
+    }
+}
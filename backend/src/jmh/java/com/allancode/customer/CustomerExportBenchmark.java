@@ -0,0 +1,82 @@
+package com.allancode.customer;
+
+import com.allancode.benchmark.BenchmarkDatabase;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole table out of Postgres as JSON: streamed through a server side cursor into NDJSON the
+ * way the /export endpoint writes it, against loading every row with selectAllCustomers and writing
+ * the list. Each operation exports all {@code size} rows to a discarding stream, so rows per second
+ * is {@code size} over the score, and gc.alloc.rate.norm shows what holding the list costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerExportBenchmark {
+    @Param({"10000", "100000"})
+    int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectWriter customerWriter = objectMapper.writerFor(Customer.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private final ObjectWriter listWriter = objectMapper.writerFor(new TypeReference<List<Customer>>() {
+    });
+    private BenchmarkDatabase database;
+    private CustomerJDBCDataAccessService underTest;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start();
+        database.insertCustomers(size);
+        underTest = new CustomerJDBCDataAccessService(database.jdbcTemplate(), new CustomerRowMapper());
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public void streamNdjson() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            generator.setRootValueSeparator(null);
+            underTest.streamCustomers(0, customer -> {
+                try {
+                    customerWriter.writeValue(generator, customer);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void selectAllJson() throws IOException {
+        listWriter.writeValue(OutputStream.nullOutputStream(), underTest.selectAllCustomers());
+    }
+}
@@ -0,0 +1,79 @@
+package com.allancode.customer;
+
+import com.allancode.benchmark.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts per second through the JPA repository, with Hibernate statement batching off (a batch
+ * size of 1) and at the configured 50. persistAllInBatches flushes and clears every batch size
+ * rows, saveAll is the Spring Data path it replaced and keeps every entity until the commit. Ids
+ * come from the pooled optimizer in both cases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerJpaInsertBenchmark {
+    private static final int CUSTOMERS = 1000;
+
+    @Param({"1", "50"})
+    int batchSize;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private CustomerRepository underTest;
+    private long next;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start();
+        context = JpaBenchmarkApplication.start(database,
+                Map.of("spring.jpa.properties.hibernate.jdbc.batch_size", batchSize));
+        underTest = context.getBean(CustomerRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public void persistAllInBatches() {
+        underTest.persistAllInBatches(customers());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CUSTOMERS)
+    public List<Customer> saveAll() {
+        return underTest.saveAll(customers());
+    }
+
+    private List<Customer> customers() {
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            long n = next++;
+            customers.add(new Customer("customer " + n, "customer" + n + "@example.com", 18 + (int) (n % 60)));
+        }
+        return customers;
+    }
+}
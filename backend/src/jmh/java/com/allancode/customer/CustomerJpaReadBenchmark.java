@@ -0,0 +1,73 @@
+package com.allancode.customer;
+
+import com.allancode.benchmark.BenchmarkDatabase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing customers through the JPA repository as managed entities with findAll, the way
+ * selectAllCustomers used to, against the detached constructor-expression projections it uses now.
+ * gc.alloc.rate.norm carries the persistence context's snapshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CustomerJpaReadBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100000"})
+    int size;
+
+    private BenchmarkDatabase database;
+    private ConfigurableApplicationContext context;
+    private CustomerRepository underTest;
+    private Integer middleId;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.start();
+        database.insertCustomers(size);
+        context = JpaBenchmarkApplication.start(database, Map.of());
+        underTest = context.getBean(CustomerRepository.class);
+        middleId = database.jdbcTemplate().queryForObject(
+                "SELECT id FROM customer ORDER BY id OFFSET ? LIMIT 1", Integer.class, size / 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        database.close();
+    }
+
+    @Benchmark
+    public List<Customer> findAll() {
+        return underTest.findAll();
+    }
+
+    @Benchmark
+    public List<Customer> findAllDetached() {
+        return underTest.findAllDetached();
+    }
+
+    @Benchmark
+    public List<Customer> findPageDetached() {
+        return underTest.findPageDetached(middleId, Limit.of(PAGE_SIZE));
+    }
+}
@@ -0,0 +1,89 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Label lookups per row against column positions resolved once, over an in-memory result set so
+ * that only the mapping is measured. Every tenth customer has a NULL age.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerRowMapperBenchmark {
+    @Param({"100", "10000"})
+    int size;
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private final RowMapperResultSetExtractor<Customer> byLabel = new RowMapperResultSetExtractor<>(customerRowMapper);
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(4);
+        String[] labels = {"id", "name", "email", "age"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER};
+        for (int column = 1; column <= labels.length; column++) {
+            metaData.setColumnName(column, labels[column - 1]);
+            metaData.setColumnLabel(column, labels[column - 1]);
+            metaData.setColumnType(column, types[column - 1]);
+        }
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+        for (int id = 1; id <= size; id++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateInt(1, id);
+            resultSet.updateString(2, "customer " + id);
+            resultSet.updateString(3, "customer" + id + "@example.com");
+            if (id % 10 == 0) {
+                resultSet.updateNull(4);
+            } else {
+                resultSet.updateInt(4, 18 + id % 60);
+            }
+            resultSet.insertRow();
+            resultSet.moveToCurrentRow();
+        }
+    }
+
+    @Benchmark
+    public List<Customer> byLabel() throws SQLException {
+        resultSet.beforeFirst();
+        return byLabel.extractData(resultSet);
+    }
+
+    @Benchmark
+    public List<Customer> byPosition() throws SQLException {
+        resultSet.beforeFirst();
+        return customerRowMapper.listExtractor().extractData(resultSet);
+    }
+
+    @Benchmark
+    public void streamedIntoRecord(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        customerRowMapper.forEach(resultSet, Row::new, blackhole::consume);
+    }
+
+    record Row(Integer id, String name, String email, Integer age) {
+    }
+}
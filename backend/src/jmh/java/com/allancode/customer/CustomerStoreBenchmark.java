@@ -0,0 +1,105 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The on-heap List backend against the off-heap one, to be read with the gc profiler columns.
+ * load fills a fresh store, so gc.alloc.rate.norm is the heap one store allocates and gc.count and
+ * gc.time the collections that costs. The lookups run against a store loaded once per trial, whose
+ * retained heap is printed when it has been loaded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CustomerStoreBenchmark {
+    private static final int KEYS = 1024;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"List", "offheap"})
+    String store;
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    private List<Customer> customers;
+    private CustomerDAO underTest;
+    private final Integer[] ids = new Integer[KEYS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(new Customer("customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        long before = usedHeapAfterGc();
+        underTest = load();
+        long retained = usedHeapAfterGc() - before;
+        System.out.printf("%n%s store of %d customers retains %.1f MB of heap%n",
+                store, size, retained / (1024.0 * 1024.0));
+
+        Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            ids[i] = 1 + random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public CustomerDAO load() {
+        CustomerDAO customerDAO = "offheap".equals(store)
+                ? new CustomerOffHeapDataAccessService()
+                : new CustomerDataAccessService();
+        if (customerDAO instanceof CustomerDataAccessService listDAO) {
+            // without the two seeded customers ids run from 1 in both stores
+            listDAO.clear();
+        }
+        customerDAO.insertCustomers(customers);
+        return customerDAO;
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return underTest.selectCustomerById(ids[next()]);
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomerPage() {
+        return underTest.selectCustomerPage(ids[next()], PAGE_SIZE);
+    }
+
+    private int next() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
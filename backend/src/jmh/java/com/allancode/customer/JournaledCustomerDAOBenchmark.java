@@ -0,0 +1,107 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Journaled writes per {@link JournaledCustomerDAO.FsyncPolicy}, from several threads so that
+ * ALWAYS can group-commit. Each operation is an update that changes a customer's age, which is
+ * journaled like an insert without growing the store. A snapshot after every iteration keeps the
+ * log from growing across the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+public class JournaledCustomerDAOBenchmark {
+    private static final int CUSTOMERS = 10_000;
+    private static final long LOG_REGION_SIZE = 64L * 1024 * 1024;
+
+    @Param({"ALWAYS", "INTERVAL", "NONE"})
+    JournaledCustomerDAO.FsyncPolicy fsync;
+
+    private final AtomicInteger threads = new AtomicInteger();
+    private Path directory;
+    private JournaledCustomerDAO underTest;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("customer-journal-benchmark");
+        underTest = new JournaledCustomerDAO(new CustomerDataAccessService(), directory, fsync, LOG_REGION_SIZE);
+        underTest.open();
+        if (fsync == JournaledCustomerDAO.FsyncPolicy.INTERVAL) {
+            // the customer.dao.journal.fsync-interval default
+            underTest.scheduleSync(Duration.ofMillis(10));
+        }
+        List<Customer> customers = new ArrayList<>(CUSTOMERS);
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customers.add(new Customer("customer " + i, "customer" + i + "@example.com", 20));
+        }
+        underTest.insertCustomers(customers);
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        underTest.snapshot();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        underTest.close();
+        JournaledCustomerDAORestoreBenchmark.delete(directory);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final int SHARE = CUSTOMERS / 8;
+
+        private final Customer update = new Customer();
+        private int first;
+        private int offset;
+        private int round;
+
+        @Setup
+        public void setUp(JournaledCustomerDAOBenchmark benchmark) {
+            // each of up to 8 threads updates its own customers, after the two seeded ones
+            first = 3 + benchmark.threads.getAndIncrement() % 8 * SHARE;
+        }
+
+        Customer next() {
+            update.setId(first + offset);
+            // every pass over the share flips the age, so each update changes the row
+            update.setAge(round % 2 == 0 ? 21 : 20);
+            if (++offset == SHARE) {
+                offset = 0;
+                round++;
+            }
+            return update;
+        }
+    }
+
+    @Benchmark
+    public CustomerUpdateOutcome updateCustomer(Writer writer) {
+        return underTest.updateCustomer(writer.next());
+    }
+}
@@ -0,0 +1,107 @@
+package com.allancode.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup of a journaled List backend: {@link JournaledCustomerDAO#open()} restores a snapshot of
+ * {@code snapshotted} customers, replays {@code logged} inserts written after it and compacts both
+ * into a new snapshot. Every iteration restores from a fresh copy of the same journal.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class JournaledCustomerDAORestoreBenchmark {
+    private static final long LOG_REGION_SIZE = 64L * 1024 * 1024;
+
+    @Param({"100000", "1000000"})
+    int snapshotted;
+
+    @Param({"0", "100000"})
+    int logged;
+
+    private Path journal;
+    private Path directory;
+    private JournaledCustomerDAO restored;
+
+    @Setup
+    public void setUp() throws IOException {
+        journal = Files.createTempDirectory("customer-journal");
+        try (JournaledCustomerDAO journaledCustomerDAO = open(journal)) {
+            journaledCustomerDAO.insertCustomers(customers(0, snapshotted));
+            journaledCustomerDAO.snapshot();
+            journaledCustomerDAO.insertCustomers(customers(snapshotted, logged));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void copyJournal() throws IOException {
+        directory = Files.createTempDirectory("customer-journal-restore");
+        try (Stream<Path> files = Files.list(journal)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, directory.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeRestored() throws IOException {
+        restored.close();
+        delete(directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(journal);
+    }
+
+    @Benchmark
+    public JournaledCustomerDAO open() throws IOException {
+        restored = open(directory);
+        return restored;
+    }
+
+    private static JournaledCustomerDAO open(Path directory) throws IOException {
+        JournaledCustomerDAO journaledCustomerDAO = new JournaledCustomerDAO(new CustomerDataAccessService(),
+                directory, JournaledCustomerDAO.FsyncPolicy.NONE, LOG_REGION_SIZE);
+        journaledCustomerDAO.open();
+        return journaledCustomerDAO;
+    }
+
+    private static List<Customer> customers(int from, int count) {
+        List<Customer> customers = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            customers.add(new Customer("customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        return customers;
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
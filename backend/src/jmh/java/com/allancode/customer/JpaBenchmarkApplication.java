@@ -0,0 +1,40 @@
+package com.allancode.customer;
+
+import com.allancode.benchmark.BenchmarkDatabase;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Just the JPA side of the application, CustomerRepository with Hibernate configured from
+ * application.yml, for the benchmarks that go through it. No component scan, so none of the DAO
+ * backends, filters or schedulers start.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@EnableJpaRepositories(basePackageClasses = CustomerRepository.class)
+@EntityScan(basePackageClasses = Customer.class)
+class JpaBenchmarkApplication {
+
+    static ConfigurableApplicationContext start(BenchmarkDatabase database, Map<String, Object> properties) {
+        Map<String, Object> arguments = new HashMap<>(properties);
+        arguments.put("spring.datasource.url", database.url());
+        arguments.put("spring.datasource.username", database.username());
+        arguments.put("spring.datasource.password", database.password());
+        arguments.put("spring.main.banner-mode", "off");
+        arguments.put("logging.level.root", "warn");
+        // command line style so they win over application.yml
+        return new SpringApplicationBuilder(JpaBenchmarkApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.entrySet().stream()
+                        .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                        .toArray(String[]::new));
+    }
+}
@@ -0,0 +1,80 @@
+package com.allancode.customer;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GET by id path below the controller, with and without {@link MeteredCustomerDAO}, over the
+ * cached List backend. That is the cheapest path there is, so the difference is the absolute cost
+ * of the timer, recorded into a Prometheus registry with percentile histograms as configured in
+ * application.yml.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MeteredCustomerDAOBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"false", "true"})
+    boolean metered;
+
+    private CustomerService customerService;
+    private final Integer[] ids = new Integer[KEYS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CustomerDataAccessService backend = new CustomerDataAccessService();
+        List<Customer> customers = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            customers.add(new Customer("customer " + i, "customer" + i + "@example.com", 18 + i % 60));
+        }
+        backend.insertCustomers(customers);
+        List<Customer> stored = backend.selectAllCustomers();
+        for (int i = 0; i < KEYS; i++) {
+            ids[i] = stored.get(i).getId();
+        }
+        CustomerDAO customerDAO = new CachingCustomerDAO(backend, KEYS, Duration.ofMinutes(10));
+        if (metered) {
+            PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+            meterRegistry.config().meterFilter(new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                    return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                }
+            });
+            customerDAO = new MeteredCustomerDAO(customerDAO, meterRegistry, "List");
+        }
+        customerService = new CustomerService(customerDAO);
+    }
+
+    @Benchmark
+    public Customer getCustomer() {
+        return customerService.getCustomer(ids[next()]);
+    }
+
+    private int next() {
+        next = (next + 1) & (KEYS - 1);
+        return next;
+    }
+}
@@ -0,0 +1,76 @@
+package com.allancode.exception;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A miss thrown from {@code depth} frames down and caught at the top, as from the service through
+ * Spring's proxies and dispatcher, and answered with a problem body. Compares an exception that
+ * captures its stack and renders the body per throw, as before {@link ProblemException}, with a
+ * stackless one created per throw and a preallocated one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProblemExceptionBenchmark {
+    private static final String MESSAGE = "customer with id does not exist";
+    private static final ResourceNotFoundException PREALLOCATED = new ResourceNotFoundException(MESSAGE);
+
+    @Param({"20", "150"})
+    int depth;
+
+    @Benchmark
+    public byte[] stackTrace() {
+        try {
+            throwFrom(depth, () -> new StackfulNotFoundException(MESSAGE));
+        } catch (StackfulNotFoundException e) {
+            return ("{\"status\":404,\"detail\":\"" + e.getMessage() + "\"}").getBytes();
+        }
+        throw new IllegalStateException();
+    }
+
+    @Benchmark
+    public byte[] stackless() {
+        try {
+            throwFrom(depth, () -> new ResourceNotFoundException(MESSAGE));
+        } catch (ProblemException e) {
+            return e.problem();
+        }
+        throw new IllegalStateException();
+    }
+
+    @Benchmark
+    public byte[] preallocated() {
+        try {
+            throwFrom(depth, () -> PREALLOCATED);
+        } catch (ProblemException e) {
+            return e.problem();
+        }
+        throw new IllegalStateException();
+    }
+
+    private static void throwFrom(int depth, Supplier<RuntimeException> exception) {
+        if (depth == 0) {
+            throw exception.get();
+        }
+        throwFrom(depth - 1, exception);
+    }
+
+    private static final class StackfulNotFoundException extends RuntimeException {
+        private StackfulNotFoundException(String message) {
+            super(message);
+        }
+    }
+}
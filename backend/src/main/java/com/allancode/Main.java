@@ -2,8 +2,9 @@ package com.allancode;
 
 
 import com.allancode.customer.Customer;
-import com.allancode.customer.CustomerRepository;
+import com.allancode.customer.CustomerDAO;
 import com.github.javafaker.Faker;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -21,7 +22,7 @@ public class Main {
     }
 
     @Bean
-    CommandLineRunner runner(CustomerRepository customerRepository){
+    CommandLineRunner runner(ObjectProvider<CustomerDAO> customerDAO){
         return args -> {
             var faker = new Faker();
             Random random = new Random();
@@ -29,7 +30,9 @@ public class Main {
                     faker.name().fullName(),
                     faker.internet().safeEmailAddress(),
                     random.nextInt(16, 99));
-            customerRepository.save(customer);
+            // through the configured backend, the List backend runs without a database;
+            // slices such as @DataJpaTest have no DAO and skip the seed
+            customerDAO.ifAvailable(dao -> dao.insertCustomer(customer));
 
         };
     }
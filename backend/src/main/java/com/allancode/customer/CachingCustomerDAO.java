@@ -0,0 +1,145 @@
+package com.allancode.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache for {@link #selectCustomerById(Integer)} in front of any other {@link CustomerDAO}.
+ * Concurrent misses on the same id share a single load, and every write through this DAO
+ * invalidates the ids it touches. Writes made by other instances are not seen until the entry
+ * expires, so with more than one instance reads can be stale for up to expire-after-write.
+ */
+public class CachingCustomerDAO implements CustomerDAO {
+    private final CustomerDAO delegate;
+    private final AsyncCache<Integer, Customer> cache;
+
+    public CachingCustomerDAO(CustomerDAO delegate, long maximumSize, Duration expireAfterWrite) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+    }
+
+    AsyncCache<Integer, Customer> cache() {
+        return cache;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return delegate.selectCustomerPage(afterId, limit);
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        delegate.streamCustomers(afterId, consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        // the load runs on the calling thread, other callers for the same id wait on its future;
+        // a null result completes the future empty and Caffeine drops the entry, so misses are not cached
+        CompletableFuture<Customer> load = new CompletableFuture<>();
+        CompletableFuture<Customer> cached = cache.get(id, (key, executor) -> load);
+        if (cached == load) {
+            try {
+                load.complete(delegate.selectCustomerById(id).orElse(null));
+            } catch (RuntimeException e) {
+                load.completeExceptionally(e);
+            }
+        }
+        try {
+            return Optional.ofNullable(cached.join()).map(CachingCustomerDAO::copyOf);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        delegate.insertCustomer(customer);
+        invalidate(customer.getId());
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        Optional<Integer> id = delegate.insertCustomerIfEmailAbsent(customer);
+        id.ifPresent(this::invalidate);
+        return id;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        delegate.insertCustomers(customers);
+        customers.forEach(customer -> invalidate(customer.getId()));
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        return delegate.insertCustomersIfEmailAbsent(customers);
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        delegate.deleteCustomerById(customerId);
+        invalidate(customerId);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        return delegate.selectExistingIds(ids);
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        CustomerUpdateOutcome outcome = delegate.updateCustomer(update);
+        if (outcome == CustomerUpdateOutcome.UPDATED) {
+            invalidate(update.getId());
+        }
+        return outcome;
+    }
+
+    private void invalidate(Integer id) {
+        if (id != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    // callers such as CustomerService.updateCustomer mutate what they get back, never hand out the cached instance
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+}
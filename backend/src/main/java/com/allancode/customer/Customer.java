@@ -6,16 +6,19 @@ import java.util.Objects;
 
 @Entity
 @Table(name = "customer", uniqueConstraints = {
-        @UniqueConstraint(name = "customer_email_unique",
+        // the name V1's UNIQUE column gets, CustomerJPADataAccessService recognises violations by it
+        @UniqueConstraint(name = CustomerJPADataAccessService.EMAIL_CONSTRAINT,
                 columnNames = "email")
 })
 public class Customer {
         @Id
-        @SequenceGenerator(name = "customer_id_seq",
-        sequenceName = "customer_id_seq",
-        allocationSize = 1)
+        // pooled optimizer: one nextval per 50 ids from a sequence of its own that increments by 50,
+        // in a range apart from the column default's, ids from 1000000000 (V3)
+        @SequenceGenerator(name = "customer_jpa_id_seq",
+        sequenceName = "customer_jpa_id_seq",
+        allocationSize = 50)
         @GeneratedValue(strategy = GenerationType.SEQUENCE,
-        generator = "customer_id_seq")
+        generator = "customer_jpa_id_seq")
         private Integer id;
 
         @Column(nullable = false)
@@ -0,0 +1,11 @@
+package com.allancode.customer;
+
+import java.util.List;
+
+public interface CustomerBatchRepository {
+    /**
+     * Persists new customers in one transaction, flushing and clearing the persistence context
+     * every JDBC batch so large batches neither grow it nor dirty check it.
+     */
+    void persistAllInBatches(List<Customer> customers);
+}
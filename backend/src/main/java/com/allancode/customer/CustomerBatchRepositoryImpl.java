@@ -0,0 +1,32 @@
+package com.allancode.customer;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+class CustomerBatchRepositoryImpl implements CustomerBatchRepository {
+    private final EntityManager entityManager;
+    private final int batchSize;
+
+    CustomerBatchRepositoryImpl(EntityManager entityManager,
+                                @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.entityManager = entityManager;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional
+    public void persistAllInBatches(List<Customer> customers) {
+        for (int i = 0; i < customers.size(); i++) {
+            entityManager.persist(customers.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
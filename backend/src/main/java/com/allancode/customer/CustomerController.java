@@ -1,18 +1,36 @@
 package com.allancode.customer;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping(path = "/api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
+    private static final int REGISTRATION_CHUNK_SIZE = 1000;
+
     private final CustomerService customerService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, ObjectMapper objectMapper) {
         this.customerService = customerService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/all")
@@ -20,6 +38,33 @@ public class CustomerController {
         return customerService.getAllCustomers();
     }
 
+    @GetMapping
+    public CustomerPage getCustomerPage(@RequestParam(name = "cursor", required = false) String cursor,
+                                        @RequestParam(name = "size", defaultValue = "50") int size){
+        return customerService.getCustomerPage(cursor, size);
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportCustomers(@RequestParam(name = "afterId", defaultValue = "0") Integer afterId,
+                                HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        ObjectWriter writer = objectMapper.writerFor(Customer.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            customerService.exportCustomers(afterId, customer -> {
+                try {
+                    writer.writeValue(generator, customer);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
     @GetMapping("/{customerId}")
     public Customer getCustomer(@PathVariable("customerId") Integer customerId){
         return customerService.getCustomer(customerId);
@@ -30,6 +75,32 @@ public class CustomerController {
         customerService.addCustomer(request);
     }
 
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<CustomerRegistrationResult> registerCustomers(@RequestBody List<CustomerRegistrationRequest> requests){
+        return customerService.addCustomers(requests);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<CustomerRegistrationResult> registerCustomerStream(HttpServletRequest request) throws IOException {
+        List<CustomerRegistrationResult> results = new ArrayList<>();
+        List<CustomerRegistrationRequest> chunk = new ArrayList<>(REGISTRATION_CHUNK_SIZE);
+        try (MappingIterator<CustomerRegistrationRequest> requests = objectMapper
+                .readerFor(CustomerRegistrationRequest.class)
+                .readValues(request.getInputStream())) {
+            while (requests.hasNextValue()) {
+                chunk.add(requests.nextValue());
+                if (chunk.size() == REGISTRATION_CHUNK_SIZE) {
+                    results.addAll(customerService.addCustomers(chunk, results.size()));
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(customerService.addCustomers(chunk, results.size()));
+        }
+        return results;
+    }
+
     @DeleteMapping("/delete/{customerId}")
     public void deleteCustomer(@PathVariable("customerId") Integer customerId){
         customerService.removeCustomerById(customerId);
@@ -1,16 +1,35 @@
 package com.allancode.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDAO {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomerPage(Integer afterId, int limit);
+    void streamCustomers(Integer afterId, Consumer<Customer> consumer);
     Optional<Customer> selectCustomerById(Integer id);
     void insertCustomer(Customer customer);
+    Optional<Integer> insertCustomerIfEmailAbsent(Customer customer);
+    void insertCustomers(List<Customer> customers);
+    /**
+     * Inserts the customers whose email is free and skips the others, deciding per row at insert
+     * time, so an email claimed concurrently is skipped rather than failing the batch.
+     *
+     * @return the emails of the customers that were inserted
+     */
+    Set<String> insertCustomersIfEmailAbsent(List<Customer> customers);
     boolean existsCustomerWithEmail(String email);
+    Set<String> selectExistingEmails(Collection<String> emails);
 
     void deleteCustomerById(Integer customerId);
 
     boolean existsCustomerWithId(Integer id);
-    void updateCustomer(Customer update);
+    Set<Integer> selectExistingIds(Collection<Integer> ids);
+    /**
+     * Writes the non-null fields of the update when at least one differs from the stored customer.
+     */
+    CustomerUpdateOutcome updateCustomer(Customer update);
 }
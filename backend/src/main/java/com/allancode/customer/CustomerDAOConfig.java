@@ -0,0 +1,146 @@
+package com.allancode.customer;
+
+import com.allancode.datasource.StatementCountingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(CustomerDAOProperties.class)
+public class CustomerDAOConfig {
+
+    /**
+     * The DAO the service layer talks to: the backend named by customer.dao.backend
+     * ("jdbc", "jpa", "List", "offheap" or "sharded"), optionally behind a read-through cache, all of it
+     * timed by {@link MeteredCustomerDAO}.
+     */
+    @Bean
+    @Primary
+    public CustomerDAO customerDAO(BeanFactory beanFactory,
+                                   CustomerDAOProperties properties,
+                                   MeterRegistry meterRegistry,
+                                   ObjectProvider<JournaledCustomerDAO> journaledCustomerDAO) {
+        CustomerDAO customerDAO = journaledCustomerDAO.getIfAvailable();
+        if (customerDAO == null) {
+            customerDAO = beanFactory.getBean(properties.backend(), CustomerDAO.class);
+        }
+
+        CustomerDAOProperties.Cache cache = properties.cache();
+        if (cache.enabled()) {
+            CachingCustomerDAO cachingCustomerDAO = new CachingCustomerDAO(
+                    customerDAO, cache.maximumSize(), cache.expireAfterWrite());
+            CaffeineCacheMetrics.monitor(meterRegistry, cachingCustomerDAO.cache(), "customers",
+                    "backend", properties.backend());
+            customerDAO = cachingCustomerDAO;
+        }
+
+        if (properties.metrics().enabled()) {
+            // outermost, so cache hits show up with the time they actually took
+            customerDAO = new MeteredCustomerDAO(customerDAO, meterRegistry, properties.backend());
+        }
+        return customerDAO;
+    }
+
+    /**
+     * Write-ahead log and snapshots for the in-memory "List" backend, restored before the
+     * application takes traffic.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "customer.dao.journal", name = "enabled", havingValue = "true")
+    public JournaledCustomerDAO journaledCustomerDAO(CustomerDataAccessService customerDataAccessService,
+                                                     CustomerDAOProperties properties) throws IOException {
+        if (!"List".equals(properties.backend())) {
+            throw new IllegalStateException("customer.dao.journal only applies to the List backend, not "
+                    + properties.backend());
+        }
+        CustomerDAOProperties.Journal journal = properties.journal();
+        JournaledCustomerDAO journaledCustomerDAO = new JournaledCustomerDAO(customerDataAccessService,
+                journal.directory(), journal.fsync(), journal.logRegionSize().toBytes());
+        journaledCustomerDAO.open();
+        if (journal.fsync() == JournaledCustomerDAO.FsyncPolicy.INTERVAL) {
+            journaledCustomerDAO.scheduleSync(journal.fsyncInterval());
+        }
+        journaledCustomerDAO.scheduleSnapshots(journal.snapshotInterval());
+        return journaledCustomerDAO;
+    }
+
+    /**
+     * Customers hash-sharded over customer.dao.sharding.shards, with ids and the email directory in
+     * spring.datasource. Each shard gets its own pool and is migrated like the main database, the
+     * directory is migrated here and filled in from the shards, so only deployments running this
+     * backend have it.
+     */
+    @Bean(name = "sharded", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "customer.dao", name = "backend", havingValue = "sharded")
+    public ShardedCustomerDAO shardedCustomerDAO(JdbcTemplate jdbcTemplate,
+                                                 CustomerRowMapper customerRowMapper,
+                                                 CustomerDAOProperties properties,
+                                                 DataSourceProperties dataSourceProperties,
+                                                 Environment environment,
+                                                 MeterRegistry meterRegistry) {
+        CustomerDAOProperties.Sharding sharding = properties.sharding();
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        for (CustomerDAOProperties.Sharding.Shard shard : sharding.shards()) {
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(dataSourceProperties.determineDriverClassName())
+                    .url(shard.url())
+                    .username(shard.username() != null ? shard.username() : dataSourceProperties.determineUsername())
+                    .password(shard.password() != null ? shard.password() : dataSourceProperties.determinePassword())
+                    .build();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+            dataSource.setPoolName("customers-" + shard.name());
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            // db/migration only, the email directory stays in spring.datasource; shards migrated
+            // before it moved to db/directory keep its version in their history
+            Flyway.configure().dataSource(dataSource).ignoreMigrationPatterns("*:missing").load().migrate();
+            dataSources.put(shard.name(), new StatementCountingDataSource(dataSource));
+        }
+        CustomerShardMap shardMap = CustomerShardMap.of(sharding.bucketCount(),
+                List.copyOf(dataSources.keySet()), sharding.shardMap());
+        migrateEmailDirectory(jdbcTemplate.getDataSource());
+        ShardedCustomerDAO shardedCustomerDAO = new ShardedCustomerDAO(jdbcTemplate, dataSources,
+                shardMap, customerRowMapper);
+        shardedCustomerDAO.backfillEmailDirectory();
+        if (shardMap.isMoving() && sharding.migrateOnStartup()) {
+            shardedCustomerDAO.migrateInBackground();
+        }
+        return shardedCustomerDAO;
+    }
+
+    /**
+     * Applies db/directory, tracked in flyway_directory_history apart from spring.flyway's history.
+     */
+    static void migrateEmailDirectory(DataSource dataSource) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/directory")
+                .table("flyway_directory_history")
+                // the database already holds db/migration's tables, V1 still applies over baseline 0
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+    }
+}
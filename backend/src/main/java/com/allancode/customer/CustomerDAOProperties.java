@@ -0,0 +1,58 @@
+package com.allancode.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "customer.dao")
+public record CustomerDAOProperties(
+        @DefaultValue("jdbc") String backend,
+        @DefaultValue Cache cache,
+        @DefaultValue Journal journal,
+        @DefaultValue Sharding sharding,
+        @DefaultValue Metrics metrics
+) {
+    public record Cache(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("10000") long maximumSize,
+            @DefaultValue("60s") Duration expireAfterWrite
+    ) {
+    }
+
+    public record Journal(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("data/customer-journal") Path directory,
+            @DefaultValue("ALWAYS") JournaledCustomerDAO.FsyncPolicy fsync,
+            @DefaultValue("10ms") Duration fsyncInterval,
+            @DefaultValue("5m") Duration snapshotInterval,
+            @DefaultValue("64MB") DataSize logRegionSize
+    ) {
+    }
+
+    public record Metrics(
+            @DefaultValue("true") boolean enabled
+    ) {
+    }
+
+    /**
+     * @param shardMap bucket ranges per shard, empty to split the buckets evenly in shard order
+     */
+    public record Sharding(
+            @DefaultValue("1024") int bucketCount,
+            @DefaultValue List<Shard> shards,
+            @DefaultValue List<CustomerShardMap.BucketRange> shardMap,
+            @DefaultValue("true") boolean migrateOnStartup
+    ) {
+        public record Shard(
+                String name,
+                String url,
+                String username,
+                String password
+        ) {
+        }
+    }
+}
@@ -1,61 +1,206 @@
 package com.allancode.customer;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Repository("List")
 public class CustomerDataAccessService implements CustomerDAO{
 
-    private static List<Customer> customers;
+    private final Map<Integer, CustomerRow> customersById = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    // id order for listing, paging and streaming
+    private final NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
 
-    static{
-        customers = new ArrayList<>();
-        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
-        customers.add(alex);
-
-        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19);
-        customers.add(jamila);
+    public CustomerDataAccessService() {
+        insertCustomer(new Customer(1, "Alex", "alex@gmail.com", 21));
+        insertCustomer(new Customer(2, "Jamila", "jamila@gmail.com", 19));
     }
+
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .map(CustomerRow::toCustomer)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return ids.tailSet(afterId, false)
+                .stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .limit(limit)
+                .map(CustomerRow::toCustomer)
+                .toList();
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        for (Integer id : ids.tailSet(afterId, false)) {
+            CustomerRow row = customersById.get(id);
+            if (row != null) {
+                consumer.accept(row.toCustomer());
+            }
+        }
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(customer -> customer.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id))
+                .map(CustomerRow::toCustomer);
     }
 
     @Override
     public void insertCustomer(Customer customer) {
-        customers.add(customer);
+        if (insert(customer) == null) {
+            throw new DuplicateKeyException("email already taken: " + customer.getEmail());
+        }
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        return Optional.ofNullable(insert(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customers.forEach(this::insertCustomer);
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        Set<String> inserted = new HashSet<>();
+        for (Customer customer : customers) {
+            if (insert(customer) != null) {
+                inserted.add(customer.getEmail());
+            }
+        }
+        return inserted;
     }
 
     @Override
     public boolean existsCustomerWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
     }
 
     @Override
-    public void deleteCustomerById(Integer id) {
-        customers.removeIf(c -> c.getId().equals(id));
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        for (String email : emails) {
+            if (idsByEmail.containsKey(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
+    }
 
+    @Override
+    public void deleteCustomerById(Integer id) {
+        CustomerRow removed = customersById.remove(id);
+        if (removed != null) {
+            idsByEmail.remove(removed.email(), id);
+            ids.remove(id);
+        }
     }
 
     @Override
     public boolean existsCustomerWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+        return customersById.containsKey(id);
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        for (Integer id : ids) {
+            if (customersById.containsKey(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customers.add(update);
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        CustomerUpdateOutcome[] outcome = {CustomerUpdateOutcome.NOT_FOUND};
+        // computeIfPresent serialises writers of the same id, the email index is swapped inside it
+        customersById.computeIfPresent(update.getId(), (id, current) -> {
+            String email = update.getEmail() != null ? update.getEmail() : current.email();
+            if (!email.equals(current.email())) {
+                Integer owner = idsByEmail.putIfAbsent(email, id);
+                if (owner != null && !owner.equals(id)) {
+                    outcome[0] = CustomerUpdateOutcome.EMAIL_TAKEN;
+                    return current;
+                }
+                idsByEmail.remove(current.email(), id);
+            }
+            CustomerRow updated = new CustomerRow(
+                    id,
+                    update.getName() != null ? update.getName() : current.name(),
+                    email,
+                    update.getAge() != null ? update.getAge() : current.age()
+            );
+            outcome[0] = updated.equals(current) ? CustomerUpdateOutcome.UNCHANGED : CustomerUpdateOutcome.UPDATED;
+            return current.equals(updated) ? current : updated;
+        });
+        return outcome[0];
+    }
+
+    /**
+     * Drops every customer, including the seeded ones, before state is restored from a journal.
+     */
+    public void clear() {
+        customersById.clear();
+        idsByEmail.clear();
+        ids.clear();
+        idSequence.set(0);
+    }
+
+    /**
+     * Claims the email first so that two concurrent inserts of the same email cannot both succeed.
+     *
+     * @return the id of the new customer, or null if the email is already taken
+     */
+    private Integer insert(Customer customer) {
+        int id;
+        if (customer.getId() != null) {
+            id = customer.getId();
+            idSequence.accumulateAndGet(id, Math::max);
+        } else {
+            id = idSequence.incrementAndGet();
+        }
+
+        if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+            return null;
+        }
+        CustomerRow row = new CustomerRow(id, customer.getName(), customer.getEmail(), customer.getAge());
+        if (customersById.putIfAbsent(id, row) != null) {
+            idsByEmail.remove(customer.getEmail(), id);
+            throw new DuplicateKeyException("customer with id already exists: " + id);
+        }
+        ids.add(id);
+        return id;
+    }
+
+    // stored rows are immutable, callers only ever get fresh Customer instances
+    private record CustomerRow(int id, String name, String email, Integer age) {
+        Customer toCustomer() {
+            return new Customer(id, name, email, age);
+        }
     }
 }
@@ -1,20 +1,92 @@
 package com.allancode.customer;
 
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDAO{
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 500;
+    private static final int UPDATE_NAME = 1;
+    private static final int UPDATE_EMAIL = 1 << 1;
+    private static final int UPDATE_AGE = 1 << 2;
+    private static final String[] UPDATE_STATEMENTS = updateStatements();
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final StatementMeters selectAll;
+    private final StatementMeters selectPage;
+    private final StatementMeters stream;
+    private final StatementMeters selectById;
+    private final StatementMeters insert;
+    private final StatementMeters insertIfAbsent;
+    private final StatementMeters insertBatch;
+    private final StatementMeters insertBatchIfAbsent;
+    private final StatementMeters insertWithIds;
+    private final StatementMeters upsertWithIds;
+    private final StatementMeters existsEmail;
+    private final StatementMeters existingEmails;
+    private final StatementMeters delete;
+    private final StatementMeters deleteBatch;
+    private final StatementMeters lockByIds;
+    private final StatementMeters existsId;
+    private final StatementMeters existingIds;
+    private final StatementMeters conditionalUpdate;
 
     public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+        // an empty composite registry drops every measurement
+        this(jdbcTemplate, customerRowMapper, new CompositeMeterRegistry());
+    }
+
+    @Autowired
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                         CustomerRowMapper customerRowMapper,
+                                         MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.selectAll = new StatementMeters(meterRegistry, "select_all");
+        this.selectPage = new StatementMeters(meterRegistry, "select_page");
+        this.stream = new StatementMeters(meterRegistry, "stream");
+        this.selectById = new StatementMeters(meterRegistry, "select_by_id");
+        this.insert = new StatementMeters(meterRegistry, "insert");
+        this.insertIfAbsent = new StatementMeters(meterRegistry, "insert_if_email_absent");
+        this.insertBatch = new StatementMeters(meterRegistry, "insert_batch");
+        this.insertBatchIfAbsent = new StatementMeters(meterRegistry, "insert_batch_if_email_absent");
+        this.insertWithIds = new StatementMeters(meterRegistry, "insert_with_ids");
+        this.upsertWithIds = new StatementMeters(meterRegistry, "upsert_with_ids");
+        this.existsEmail = new StatementMeters(meterRegistry, "exists_email");
+        this.existingEmails = new StatementMeters(meterRegistry, "select_existing_emails");
+        this.delete = new StatementMeters(meterRegistry, "delete");
+        this.deleteBatch = new StatementMeters(meterRegistry, "delete_batch");
+        this.lockByIds = new StatementMeters(meterRegistry, "lock_by_ids");
+        this.existsId = new StatementMeters(meterRegistry, "exists_id");
+        this.existingIds = new StatementMeters(meterRegistry, "select_existing_ids");
+        this.conditionalUpdate = new StatementMeters(meterRegistry, "update");
     }
 
     @Override
@@ -24,7 +96,58 @@ public class CustomerJDBCDataAccessService implements CustomerDAO{
                 FROM customer
                 """;
 
-        return jdbcTemplate.query(sql, customerRowMapper);
+        return selectAll.execute(() -> jdbcTemplate.query(sql, customerRowMapper.listExtractor()), List::size);
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+
+        return selectPage.execute(() -> jdbcTemplate.query(sql, customerRowMapper.listExtractor(), afterId, limit),
+                List::size);
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > ?
+                ORDER BY id
+                """;
+
+        stream.execute(() -> jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            // the postgres driver only fetches through a server side cursor when autocommit is off,
+            // otherwise the fetch size is ignored and the whole result is buffered in memory
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                statement.setInt(1, afterId);
+                int[] rows = new int[1];
+                try (ResultSet rs = statement.executeQuery()) {
+                    customerRowMapper.forEach(rs, customer -> {
+                        rows[0]++;
+                        consumer.accept(customer);
+                    });
+                }
+                return rows[0];
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        }), Integer::intValue);
     }
 
     @Override
@@ -34,7 +157,7 @@ public class CustomerJDBCDataAccessService implements CustomerDAO{
                 FROM customer
                 WHERE id = ?
                 """;
-        return jdbcTemplate.query(sql, customerRowMapper, id)
+        return selectById.execute(() -> jdbcTemplate.query(sql, customerRowMapper, id), List::size)
                 .stream()
                 .findFirst();
     }
@@ -45,25 +168,186 @@ public class CustomerJDBCDataAccessService implements CustomerDAO{
                 INSERT INTO customer (name, email, age)
                 VALUES (?, ?, ?)
                 """;
-        jdbcTemplate.update(
+        insert.execute(() -> jdbcTemplate.update(
                 sql,
                 customer.getName(),
                 customer.getEmail(),
                 customer.getAge()
-        );
+        ), Integer::intValue);
 
     }
 
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES (?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return insertIfAbsent.execute(() -> jdbcTemplate.query(
+                        sql,
+                        (rs, rowNum) -> rs.getInt("id"),
+                        customer.getName(),
+                        customer.getEmail(),
+                        customer.getAge()
+                ), List::size)
+                .stream()
+                .findFirst();
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES (?, ?, ?)
+                """;
+        // with reWriteBatchedInserts the driver folds each batch into multi-row INSERTs
+        insertBatch.executeBatch(() -> jdbcTemplate.batchUpdate(
+                sql, customers, INSERT_BATCH_SIZE, (ps, customer) -> {
+                    ps.setString(1, customer.getName());
+                    ps.setString(2, customer.getEmail());
+                    ps.setInt(3, customer.getAge());
+                }));
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        // one statement per chunk, with the columns as arrays so the text stays the same
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                SELECT *
+                FROM unnest(?::text[], ?::text[], ?::int4[])
+                ON CONFLICT (email) DO NOTHING
+                RETURNING email
+                """;
+        Set<String> inserted = new HashSet<>();
+        for (int from = 0; from < customers.size(); from += INSERT_BATCH_SIZE) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + INSERT_BATCH_SIZE, customers.size()));
+            inserted.addAll(insertBatchIfAbsent.execute(() -> jdbcTemplate.query(
+                    sql,
+                    ps -> {
+                        Connection connection = ps.getConnection();
+                        ps.setArray(1, connection.createArrayOf("text",
+                                chunk.stream().map(Customer::getName).toArray()));
+                        ps.setArray(2, connection.createArrayOf("text",
+                                chunk.stream().map(Customer::getEmail).toArray()));
+                        ps.setArray(3, connection.createArrayOf("int4",
+                                chunk.stream().map(Customer::getAge).toArray()));
+                    },
+                    (rs, rowNum) -> rs.getString("email")
+            ), List::size));
+        }
+        return inserted;
+    }
+
+    /**
+     * Inserts customers whose ids were allocated elsewhere, for {@link ShardedCustomerDAO}.
+     */
+    void insertCustomersWithIds(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                VALUES (?, ?, ?, ?)
+                """;
+        insertWithIds.executeBatch(() -> jdbcTemplate.batchUpdate(
+                sql, customers, INSERT_BATCH_SIZE, (ps, customer) -> {
+                    ps.setInt(1, customer.getId());
+                    ps.setString(2, customer.getName());
+                    ps.setString(3, customer.getEmail());
+                    ps.setInt(4, customer.getAge());
+                }));
+    }
+
+    /**
+     * Writes copies of customers kept elsewhere, replacing any earlier copy, for
+     * {@link ShardedCustomerDAO#migrate()}.
+     */
+    void upsertCustomersWithIds(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (id, name, email, age)
+                SELECT *
+                FROM unnest(?::int4[], ?::text[], ?::text[], ?::int4[])
+                ON CONFLICT (id) DO UPDATE
+                SET name = excluded.name, email = excluded.email, age = excluded.age
+                """;
+        upsertWithIds.execute(() -> jdbcTemplate.update(sql, ps -> setColumns(ps, customers)), Integer::intValue);
+    }
+
+    /**
+     * Locks the rows of the given customers that exist and hands them over, for
+     * {@link ShardedCustomerDAO#migrate()}. Writes to those rows wait until {@code whileLocked} returns.
+     */
+    void lockCustomers(Collection<Integer> ids, Consumer<List<Customer>> whileLocked) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = ANY (?)
+                ORDER BY id
+                FOR UPDATE
+                """;
+        lockByIds.execute(() -> jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<Customer> customers;
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setArray(1, connection.createArrayOf("int4", ids.toArray()));
+                    try (ResultSet rs = statement.executeQuery()) {
+                        customers = customerRowMapper.listExtractor().extractData(rs);
+                    }
+                }
+                whileLocked.accept(customers);
+                connection.commit();
+                return customers.size();
+            } catch (RuntimeException | SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }), Integer::intValue);
+    }
+
+    private static void setColumns(PreparedStatement ps, List<Customer> customers) throws SQLException {
+        Connection connection = ps.getConnection();
+        ps.setArray(1, connection.createArrayOf("int4", customers.stream().map(Customer::getId).toArray()));
+        ps.setArray(2, connection.createArrayOf("text", customers.stream().map(Customer::getName).toArray()));
+        ps.setArray(3, connection.createArrayOf("text", customers.stream().map(Customer::getEmail).toArray()));
+        ps.setArray(4, connection.createArrayOf("int4", customers.stream().map(Customer::getAge).toArray()));
+    }
+
     @Override
     public boolean existsCustomerWithEmail(String email) {
+        // EXISTS stops at the first index entry where count(id) would look for more
         var sql = """
-                SELECT count(id)
+                SELECT EXISTS (
+                    SELECT 1
+                    FROM customer
+                    WHERE email = ?
+                )
+                """;
+
+        return Boolean.TRUE.equals(existsEmail.execute(
+                () -> jdbcTemplate.queryForObject(sql, Boolean.class, email), exists -> 1));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT email
                 FROM customer
-                WHERE email = ?
+                WHERE email = ANY (?)
                 """;
 
-        Integer count =  jdbcTemplate.queryForObject(sql, Integer.class, email);
-        return count != null && count > 0;
+        List<String> existing = existingEmails.execute(() -> jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")
+        ), List::size);
+        return new HashSet<>(existing);
     }
 
     @Override
@@ -73,48 +357,194 @@ public class CustomerJDBCDataAccessService implements CustomerDAO{
                 FROM customer
                 WHERE id = ?
                 """;
-        jdbcTemplate.update(sql, customerId);
+        delete.execute(() -> jdbcTemplate.update(sql, customerId), Integer::intValue);
+    }
+
+    void deleteCustomersByIds(Collection<Integer> customerIds) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = ANY (?)
+                """;
+        deleteBatch.execute(() -> jdbcTemplate.update(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int4", customerIds.toArray()))),
+                Integer::intValue);
     }
 
     @Override
     public boolean existsCustomerWithId(Integer id) {
         var sql = """
-                SELECT count(id)
+                SELECT EXISTS (
+                    SELECT 1
+                    FROM customer
+                    WHERE id = ?
+                )
+                """;
+        return Boolean.TRUE.equals(existsId.execute(
+                () -> jdbcTemplate.queryForObject(sql, Boolean.class, id), exists -> 1));
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT id
                 FROM customer
-                WHERE id = ?
+                WHERE id = ANY (?)
                 """;
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-        return count != null && count > 0;
+
+        List<Integer> existing = existingIds.execute(() -> jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int4", ids.toArray())),
+                (rs, rowNum) -> rs.getInt("id")
+        ), List::size);
+        return new HashSet<>(existing);
     }
 
     @Override
-    public void updateCustomer(Customer update) {
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        int shape = 0;
+        Object[] values = new Object[3];
+        int valueCount = 0;
         if (update.getName() != null){
-            String sql = """
-                    UPDATE 
-                    customer
-                    SET name = ?
-                    WHERE id = ?
-                    """;
-            jdbcTemplate.update(sql,update.getName(), update.getId());
+            shape |= UPDATE_NAME;
+            values[valueCount++] = update.getName();
+        }
+        if (update.getEmail() != null){
+            shape |= UPDATE_EMAIL;
+            values[valueCount++] = update.getEmail();
         }
         if (update.getAge() != null){
-            String sql = """
-                    UPDATE 
-                    customer
-                    SET age = ?
-                    WHERE id = ?
-                    """;
-            jdbcTemplate.update(sql,update.getAge(), update.getId());
+            shape |= UPDATE_AGE;
+            values[valueCount++] = update.getAge();
         }
-        if (update.getEmail() != null){
-            String sql = """
-                    UPDATE 
-                    customer
-                    SET email = ?
-                    WHERE id = ?
-                    """;
-            jdbcTemplate.update(sql,update.getEmail(), update.getId());
+        if (shape == 0){
+            return existsCustomerWithId(update.getId())
+                    ? CustomerUpdateOutcome.UNCHANGED
+                    : CustomerUpdateOutcome.NOT_FOUND;
+        }
+        // parameters in statement order: email probe, SET values, id, changed predicate, id
+        Object[] args = new Object[2 * valueCount + 4];
+        int argCount = 0;
+        if ((shape & UPDATE_EMAIL) != 0){
+            args[argCount++] = update.getEmail();
+            args[argCount++] = update.getId();
+        }
+        System.arraycopy(values, 0, args, argCount, valueCount);
+        argCount += valueCount;
+        args[argCount++] = update.getId();
+        System.arraycopy(values, 0, args, argCount, valueCount);
+        argCount += valueCount;
+        args[argCount++] = update.getId();
+        String sql = UPDATE_STATEMENTS[shape];
+        Object[] parameters = Arrays.copyOf(args, argCount);
+        try {
+            // the outcome row, the updated row itself is not returned
+            String outcome = conditionalUpdate.execute(
+                    () -> jdbcTemplate.queryForObject(sql, String.class, parameters), row -> 1);
+            return CustomerUpdateOutcome.valueOf(outcome);
+        } catch (DuplicateKeyException e) {
+            // another writer claimed the email between the probe and the write
+            return CustomerUpdateOutcome.EMAIL_TAKEN;
+        }
+    }
+
+    /**
+     * One conditional UPDATE per combination of changed columns, indexed by the UPDATE_* bit mask.
+     * Keeping the set of statement texts fixed lets the driver reuse its server side prepared statements.
+     * The row is only written when a column actually changes and the new email is free, and the
+     * statement reports which of those held, so an update is a single round trip.
+     */
+    private static String[] updateStatements() {
+        String[] statements = new String[(UPDATE_NAME | UPDATE_EMAIL | UPDATE_AGE) + 1];
+        for (int shape = 1; shape < statements.length; shape++) {
+            StringJoiner columns = new StringJoiner(", ");
+            StringJoiner changed = new StringJoiner(" OR ");
+            if ((shape & UPDATE_NAME) != 0) {
+                columns.add("name = ?");
+                changed.add("name IS DISTINCT FROM ?");
+            }
+            if ((shape & UPDATE_EMAIL) != 0) {
+                columns.add("email = ?");
+                changed.add("email IS DISTINCT FROM ?");
+            }
+            if ((shape & UPDATE_AGE) != 0) {
+                columns.add("age = ?");
+                changed.add("age IS DISTINCT FROM ?");
+            }
+            String emailTaken = (shape & UPDATE_EMAIL) != 0
+                    ? "EXISTS (SELECT 1 FROM customer WHERE email = ? AND id <> ?)"
+                    : "false";
+            statements[shape] = """
+                    WITH probe AS (
+                        SELECT %s AS email_taken
+                    ), updated AS (
+                        UPDATE customer
+                        SET %s
+                        WHERE id = ?
+                          AND NOT (SELECT email_taken FROM probe)
+                          AND (%s)
+                        RETURNING id
+                    )
+                    SELECT CASE
+                        WHEN EXISTS (SELECT 1 FROM updated) THEN 'UPDATED'
+                        WHEN NOT EXISTS (SELECT 1 FROM customer WHERE id = ?) THEN 'NOT_FOUND'
+                        WHEN (SELECT email_taken FROM probe) THEN 'EMAIL_TAKEN'
+                        ELSE 'UNCHANGED'
+                    END
+                    """.formatted(emailTaken, columns, changed);
+        }
+        return statements;
+    }
+
+    /**
+     * Timer and row counter of one statement, customer.jdbc.statement and customer.jdbc.rows tagged
+     * with the statement name.
+     */
+    private static final class StatementMeters {
+        private final Timer timer;
+        private final Counter rows;
+        private final Clock clock;
+
+        private StatementMeters(MeterRegistry meterRegistry, String name) {
+            this.timer = Timer.builder("customer.jdbc.statement")
+                    .description("Statements the JDBC backend runs, including reading their results")
+                    .tag("statement", name)
+                    .register(meterRegistry);
+            this.rows = Counter.builder("customer.jdbc.rows")
+                    .description("Rows the JDBC backend read or wrote")
+                    .tag("statement", name)
+                    .register(meterRegistry);
+            this.clock = meterRegistry.config().clock();
+        }
+
+        /**
+         * A batch, its rows summed over the update counts of every chunk.
+         */
+        void executeBatch(Supplier<int[][]> statement) {
+            execute(statement, updateCounts -> {
+                int written = 0;
+                for (int[] batch : updateCounts) {
+                    for (int count : batch) {
+                        // the driver reports SUCCESS_NO_INFO (-2) for rewritten multi-row inserts
+                        written += count >= 0 ? count : 1;
+                    }
+                }
+                return written;
+            });
+        }
+
+        <T> T execute(Supplier<T> statement, ToIntFunction<? super T> rowCount) {
+            long start = clock.monotonicTime();
+            try {
+                T result = statement.get();
+                rows.increment(rowCount.applyAsInt(result));
+                return result;
+            } finally {
+                timer.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+            }
         }
     }
 }
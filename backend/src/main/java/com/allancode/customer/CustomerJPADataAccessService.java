@@ -1,12 +1,24 @@
 package com.allancode.customer;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDAO{
+    private static final int STREAM_CHUNK_SIZE = 1000;
+    private static final int INSERT_CHUNK_SIZE = 500;
+    // the name Postgres gave the UNIQUE on customer.email (V1)
+    static final String EMAIL_CONSTRAINT = "customer_email_key";
+
     private final CustomerRepository customerRepository;
 
     public CustomerJPADataAccessService(CustomerRepository customerRepository) {
@@ -15,7 +27,25 @@ public class CustomerJPADataAccessService implements CustomerDAO{
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customerRepository.findAll();
+        return customerRepository.findAllDetached();
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return customerRepository.findPageDetached(afterId, Limit.of(limit));
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        // walk the table in keyset chunks so that no persistence context outlives a single chunk
+        List<Customer> chunk = selectCustomerPage(afterId, STREAM_CHUNK_SIZE);
+        while (!chunk.isEmpty()) {
+            chunk.forEach(consumer);
+            if (chunk.size() < STREAM_CHUNK_SIZE) {
+                return;
+            }
+            chunk = selectCustomerPage(chunk.get(chunk.size() - 1).getId(), STREAM_CHUNK_SIZE);
+        }
     }
 
     @Override
@@ -28,11 +58,46 @@ public class CustomerJPADataAccessService implements CustomerDAO{
         customerRepository.save(customer);
     }
 
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        return customerRepository.insertIfEmailAbsent(
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customerRepository.persistAllInBatches(customers);
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        Set<String> inserted = new HashSet<>();
+        for (int from = 0; from < customers.size(); from += INSERT_CHUNK_SIZE) {
+            List<Customer> chunk = customers.subList(from, Math.min(from + INSERT_CHUNK_SIZE, customers.size()));
+            inserted.addAll(customerRepository.insertAllIfEmailAbsent(
+                    chunk.stream().map(Customer::getName).toArray(String[]::new),
+                    chunk.stream().map(Customer::getEmail).toArray(String[]::new),
+                    chunk.stream().map(Customer::getAge).toArray(Integer[]::new)));
+        }
+        return inserted;
+    }
+
     @Override
     public boolean existsCustomerWithEmail(String email) {
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findExistingEmails(emails.toArray(String[]::new));
+    }
+
     @Override
     public void deleteCustomerById(Integer id) {
         customerRepository.deleteById(id);
@@ -44,7 +109,33 @@ public class CustomerJPADataAccessService implements CustomerDAO{
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return customerRepository.findExistingIds(ids.toArray(Integer[]::new));
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        try {
+            return CustomerUpdateOutcome.valueOf(customerRepository.updateIfChanged(
+                    update.getId(), update.getName(), update.getEmail(), update.getAge()));
+        } catch (DataIntegrityViolationException e) {
+            if (!violatesEmailConstraint(e)) {
+                throw e;
+            }
+            // another writer claimed the email between the probe and the write
+            return CustomerUpdateOutcome.EMAIL_TAKEN;
+        }
+    }
+
+    private static boolean violatesEmailConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return EMAIL_CONSTRAINT.equals(violation.getConstraintName());
+            }
+        }
+        return false;
     }
 }
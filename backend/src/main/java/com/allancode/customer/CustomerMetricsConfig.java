@@ -0,0 +1,24 @@
+package com.allancode.customer;
+
+import com.allancode.exception.ExceptionCountingResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Request level customer metrics. HTTP timings per route come from Spring's http.server.requests,
+ * DAO and statement timings from {@link MeteredCustomerDAO} and {@link CustomerJDBCDataAccessService},
+ * round trips per request from DatabaseRoundTripsConfig.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(prefix = "customer.dao.metrics", name = "enabled", matchIfMissing = true)
+public class CustomerMetricsConfig {
+
+    @Bean
+    public ExceptionCountingResolver exceptionCountingResolver(MeterRegistry meterRegistry) {
+        return new ExceptionCountingResolver(meterRegistry);
+    }
+}
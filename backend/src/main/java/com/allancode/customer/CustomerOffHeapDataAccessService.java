@@ -0,0 +1,445 @@
+package com.allancode.customer;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory customer store that keeps rows outside the Java heap. Rows live in columns of direct
+ * buffers (int id, int age, and references into an {@link OffHeapStringArena} for name and email),
+ * indexed by id and by email with open addressing hash tables of primitive ints. {@link Customer}
+ * objects are only created when rows are read.
+ * <p>
+ * Row slots are appended in id order and never reused, so the id column stays sorted and keyset
+ * paging is a binary search. Deleted rows are flagged in a bitmap; strings replaced by updates or
+ * left by deletes stay in the arena.
+ */
+@Repository("offheap")
+public class CustomerOffHeapDataAccessService implements CustomerDAO {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int ROWS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = ROWS_PER_CHUNK - 1;
+    private static final int ARENA_CHUNK_BYTES = 16 * 1024 * 1024;
+    private static final int INITIAL_BUCKETS = 1024;
+    private static final int NULL_AGE = Integer.MIN_VALUE;
+    static final int STREAM_BATCH_SIZE = 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<IntBuffer> idColumn = new ArrayList<>();
+    private final List<IntBuffer> ageColumn = new ArrayList<>();
+    private final List<LongBuffer> nameColumn = new ArrayList<>();
+    private final List<LongBuffer> emailColumn = new ArrayList<>();
+    private final OffHeapStringArena arena = new OffHeapStringArena(ARENA_CHUNK_BYTES);
+    private long[] deleted = new long[ROWS_PER_CHUNK / Long.SIZE];
+
+    // open addressing with linear probing, each bucket holds slot + 1 and 0 marks an empty bucket
+    private int[] idBuckets = new int[INITIAL_BUCKETS];
+    private int[] emailBuckets = new int[INITIAL_BUCKETS];
+    private int[] emailHashes = new int[INITIAL_BUCKETS];
+
+    private int rowCount;
+    private int liveCount;
+    private int lastId;
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        List<Customer> customers = new ArrayList<>();
+        streamCustomers(0, customers::add);
+        return customers;
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Customer> customers = new ArrayList<>(Math.min(limit, liveCount));
+            for (int slot = firstSlotAfter(afterId); slot < rowCount && customers.size() < limit; slot++) {
+                if (!isDeleted(slot)) {
+                    customers.add(customerAt(slot));
+                }
+            }
+            return customers;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the rows out a batch at a time and hands them to the consumer with the lock released,
+     * so a slow consumer such as an export to an HTTP client does not hold writers off. Each batch
+     * continues after the last id of the one before.
+     */
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        int lastId = afterId;
+        List<Customer> batch;
+        do {
+            batch = selectCustomerPage(lastId, STREAM_BATCH_SIZE);
+            batch.forEach(consumer);
+            if (!batch.isEmpty()) {
+                lastId = batch.getLast().getId();
+            }
+        } while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlotById(id);
+            return slot < 0 ? Optional.empty() : Optional.of(customerAt(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insert(customer) == null) {
+            throw new DuplicateKeyException("email already taken: " + customer.getEmail());
+        }
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        return Optional.ofNullable(insert(customer));
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        customers.forEach(this::insertCustomer);
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        Set<String> inserted = new HashSet<>();
+        for (Customer customer : customers) {
+            if (insert(customer) != null) {
+                inserted.add(customer.getEmail());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return findSlotByEmail(bytes, emailHash(email)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        Set<String> existing = new HashSet<>();
+        for (String email : emails) {
+            if (existsCustomerWithEmail(email)) {
+                existing.add(email);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlotById(customerId);
+            if (slot < 0) {
+                return;
+            }
+            removeBucket(idBuckets, null, bucketOf(idBuckets, idHash(customerId), slot));
+            removeBucket(emailBuckets, emailHashes, bucketOf(emailBuckets, storedEmailHash(slot), slot));
+            arena.release(nameRef(slot));
+            arena.release(emailRef(slot));
+            deleted[slot >>> 6] |= 1L << slot;
+            liveCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        lock.readLock().lock();
+        try {
+            return findSlotById(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        Set<Integer> existing = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Integer id : ids) {
+                if (findSlotById(id) >= 0) {
+                    existing.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return existing;
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlotById(update.getId());
+            if (slot < 0) {
+                return CustomerUpdateOutcome.NOT_FOUND;
+            }
+            Customer current = customerAt(slot);
+            boolean changes = false;
+            if (update.getEmail() != null && !update.getEmail().equals(current.getEmail())) {
+                byte[] email = update.getEmail().getBytes(StandardCharsets.UTF_8);
+                int hash = emailHash(update.getEmail());
+                if (findSlotByEmail(email, hash) >= 0) {
+                    return CustomerUpdateOutcome.EMAIL_TAKEN;
+                }
+                removeBucket(emailBuckets, emailHashes, bucketOf(emailBuckets, storedEmailHash(slot), slot));
+                arena.release(emailRef(slot));
+                emailColumn.get(slot >>> CHUNK_SHIFT).put(slot & CHUNK_MASK, arena.append(email));
+                addBucket(emailBuckets, emailHashes, hash, slot);
+                changes = true;
+            }
+            if (update.getName() != null && !update.getName().equals(current.getName())) {
+                arena.release(nameRef(slot));
+                nameColumn.get(slot >>> CHUNK_SHIFT).put(slot & CHUNK_MASK, arena.append(update.getName()));
+                changes = true;
+            }
+            if (update.getAge() != null && !update.getAge().equals(current.getAge())) {
+                ageColumn.get(slot >>> CHUNK_SHIFT).put(slot & CHUNK_MASK, update.getAge());
+                changes = true;
+            }
+            return changes ? CustomerUpdateOutcome.UPDATED : CustomerUpdateOutcome.UNCHANGED;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            long columnBytes = (long) idColumn.size() * ROWS_PER_CHUNK * (Integer.BYTES * 2 + Long.BYTES * 2);
+            return columnBytes + arena.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Integer insert(Customer customer) {
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        int hash = emailHash(customer.getEmail());
+
+        lock.writeLock().lock();
+        try {
+            if (findSlotByEmail(email, hash) >= 0) {
+                return null;
+            }
+            int id = customer.getId() != null ? customer.getId() : lastId + 1;
+            if (id <= lastId) {
+                if (findSlotById(id) >= 0) {
+                    throw new DuplicateKeyException("customer with id already exists: " + id);
+                }
+                throw new IllegalArgumentException("customer ids must be inserted in increasing order: " + id);
+            }
+            int slot = rowCount;
+            if ((slot & CHUNK_MASK) == 0) {
+                addChunk();
+            }
+            int chunk = slot >>> CHUNK_SHIFT;
+            int row = slot & CHUNK_MASK;
+            idColumn.get(chunk).put(row, id);
+            ageColumn.get(chunk).put(row, customer.getAge() == null ? NULL_AGE : customer.getAge());
+            nameColumn.get(chunk).put(row, arena.append(customer.getName()));
+            emailColumn.get(chunk).put(row, arena.append(email));
+            rowCount++;
+
+            if ((liveCount + 1) * 2 > idBuckets.length) {
+                resizeIndexes(idBuckets.length * 2);
+            }
+            addBucket(idBuckets, null, idHash(id), slot);
+            addBucket(emailBuckets, emailHashes, hash, slot);
+            liveCount++;
+            lastId = id;
+            return id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addChunk() {
+        idColumn.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer());
+        ageColumn.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer());
+        nameColumn.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer());
+        emailColumn.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer());
+        int requiredWords = idColumn.size() * ROWS_PER_CHUNK / Long.SIZE;
+        if (deleted.length < requiredWords) {
+            deleted = Arrays.copyOf(deleted, requiredWords);
+        }
+    }
+
+    private Customer customerAt(int slot) {
+        int age = ageColumn.get(slot >>> CHUNK_SHIFT).get(slot & CHUNK_MASK);
+        return new Customer(
+                idAt(slot),
+                arena.read(nameRef(slot)),
+                arena.read(emailRef(slot)),
+                age == NULL_AGE ? null : age
+        );
+    }
+
+    private int idAt(int slot) {
+        return idColumn.get(slot >>> CHUNK_SHIFT).get(slot & CHUNK_MASK);
+    }
+
+    private long nameRef(int slot) {
+        return nameColumn.get(slot >>> CHUNK_SHIFT).get(slot & CHUNK_MASK);
+    }
+
+    private long emailRef(int slot) {
+        return emailColumn.get(slot >>> CHUNK_SHIFT).get(slot & CHUNK_MASK);
+    }
+
+    private boolean isDeleted(int slot) {
+        return (deleted[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int firstSlotAfter(int afterId) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (idAt(mid) <= afterId) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int findSlotById(Integer id) {
+        if (id == null) {
+            return -1;
+        }
+        int mask = idBuckets.length - 1;
+        for (int bucket = idHash(id) & mask; idBuckets[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int slot = idBuckets[bucket] - 1;
+            if (idAt(slot) == id) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int findSlotByEmail(byte[] email, int hash) {
+        int mask = emailBuckets.length - 1;
+        for (int bucket = hash & mask; emailBuckets[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int slot = emailBuckets[bucket] - 1;
+            if (emailHashes[bucket] == hash && arena.contentEquals(emailRef(slot), email)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int storedEmailHash(int slot) {
+        return emailHash(arena.read(emailRef(slot)));
+    }
+
+    private int bucketOf(int[] buckets, int hash, int slot) {
+        int mask = buckets.length - 1;
+        for (int bucket = hash & mask; ; bucket = (bucket + 1) & mask) {
+            if (buckets[bucket] == slot + 1) {
+                return bucket;
+            }
+        }
+    }
+
+    private void addBucket(int[] buckets, int[] hashes, int hash, int slot) {
+        int mask = buckets.length - 1;
+        int bucket = hash & mask;
+        while (buckets[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = slot + 1;
+        if (hashes != null) {
+            hashes[bucket] = hash;
+        }
+    }
+
+    // backward shift deletion keeps probe chains intact without tombstones
+    private void removeBucket(int[] buckets, int[] hashes, int bucket) {
+        int mask = buckets.length - 1;
+        int hole = bucket;
+        for (int next = (hole + 1) & mask; buckets[next] != 0; next = (next + 1) & mask) {
+            int home = (hashes != null ? hashes[next] : idHash(idAt(buckets[next] - 1))) & mask;
+            boolean canMove = hole <= next
+                    ? home <= hole || home > next
+                    : home <= hole && home > next;
+            if (canMove) {
+                buckets[hole] = buckets[next];
+                if (hashes != null) {
+                    hashes[hole] = hashes[next];
+                }
+                hole = next;
+            }
+        }
+        buckets[hole] = 0;
+        if (hashes != null) {
+            hashes[hole] = 0;
+        }
+    }
+
+    private void resizeIndexes(int capacity) {
+        int[] oldIdBuckets = idBuckets;
+        int[] oldEmailBuckets = emailBuckets;
+        int[] oldEmailHashes = emailHashes;
+        idBuckets = new int[capacity];
+        emailBuckets = new int[capacity];
+        emailHashes = new int[capacity];
+        for (int bucket = 0; bucket < oldIdBuckets.length; bucket++) {
+            if (oldIdBuckets[bucket] != 0) {
+                int slot = oldIdBuckets[bucket] - 1;
+                addBucket(idBuckets, null, idHash(idAt(slot)), slot);
+            }
+            if (oldEmailBuckets[bucket] != 0) {
+                addBucket(emailBuckets, emailHashes, oldEmailHashes[bucket], oldEmailBuckets[bucket] - 1);
+            }
+        }
+    }
+
+    private static int idHash(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int emailHash(String email) {
+        int hash = email.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,297 @@
+package com.allancode.customer;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDAO, DisposableBean {
+    // rows requested from the server per round trip while a Flux is being drained
+    private static final int FETCH_SIZE = 1000;
+    private static final int UPDATE_NAME = 1;
+    private static final int UPDATE_EMAIL = 1 << 1;
+    private static final int UPDATE_AGE = 1 << 2;
+    private static final String[] UPDATE_STATEMENTS = updateStatements();
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient databaseClient;
+
+    public CustomerR2dbcDataAccessService(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+    }
+
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                ORDER BY id
+                """;
+
+        return databaseClient.sql(sql)
+                .filter((statement, next) -> next.execute(statement.fetchSize(FETCH_SIZE)))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomerPage(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                LIMIT :limit
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> streamCustomers(Integer afterId) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id > :afterId
+                ORDER BY id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .filter((statement, next) -> next.execute(statement.fetchSize(FETCH_SIZE)))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id, name, email, age
+                FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .one();
+    }
+
+    @Override
+    public Mono<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail());
+        spec = customer.getAge() == null ? spec.bindNull("age", Integer.class) : spec.bind("age", customer.getAge());
+        return spec.map(row -> row.get("id", Integer.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Void> insertCustomers(List<Customer> customers) {
+        // one statement for the whole list, the rows travel as three parallel arrays
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT * FROM unnest(:names::text[], :emails::text[], :ages::int[])
+                """;
+
+        String[] names = new String[customers.size()];
+        String[] emails = new String[customers.size()];
+        Integer[] ages = new Integer[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            names[i] = customers.get(i).getName();
+            emails[i] = customers.get(i).getEmail();
+            ages[i] = customers.get(i).getAge();
+        }
+        return databaseClient.sql(sql)
+                .bind("names", names)
+                .bind("emails", emails)
+                .bind("ages", ages)
+                .then();
+    }
+
+    @Override
+    public Flux<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer(name, email, age)
+                SELECT * FROM unnest(:names::text[], :emails::text[], :ages::int[])
+                ON CONFLICT (email) DO NOTHING
+                RETURNING email
+                """;
+
+        String[] names = new String[customers.size()];
+        String[] emails = new String[customers.size()];
+        Integer[] ages = new Integer[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            names[i] = customers.get(i).getName();
+            emails[i] = customers.get(i).getEmail();
+            ages[i] = customers.get(i).getAge();
+        }
+        return databaseClient.sql(sql)
+                .bind("names", names)
+                .bind("emails", emails)
+                .bind("ages", ages)
+                .map(row -> row.get("email", String.class))
+                .all();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS(SELECT 1 FROM customer WHERE email = :email)
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Flux<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email
+                FROM customer
+                WHERE email = ANY(:emails)
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("emails", emails.toArray(String[]::new))
+                .map(row -> row.get("email", String.class))
+                .all();
+    }
+
+    @Override
+    public Mono<Void> deleteCustomerById(Integer customerId) {
+        var sql = """
+                DELETE
+                FROM customer
+                WHERE id = :id
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", customerId)
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> existsCustomerWithId(Integer id) {
+        var sql = """
+                SELECT EXISTS(SELECT 1 FROM customer WHERE id = :id)
+                """;
+
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    @Override
+    public Mono<CustomerUpdateOutcome> updateCustomer(Customer update) {
+        int shape = (update.getName() != null ? UPDATE_NAME : 0)
+                | (update.getEmail() != null ? UPDATE_EMAIL : 0)
+                | (update.getAge() != null ? UPDATE_AGE : 0);
+        if (shape == 0) {
+            return existsCustomerWithId(update.getId())
+                    .map(exists -> exists ? CustomerUpdateOutcome.UNCHANGED : CustomerUpdateOutcome.NOT_FOUND);
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(UPDATE_STATEMENTS[shape])
+                .bind("id", update.getId());
+        if (update.getName() != null) {
+            spec = spec.bind("name", update.getName());
+        }
+        if (update.getEmail() != null) {
+            spec = spec.bind("email", update.getEmail());
+        }
+        if (update.getAge() != null) {
+            spec = spec.bind("age", update.getAge());
+        }
+        return spec.map(row -> CustomerUpdateOutcome.valueOf(row.get(0, String.class)))
+                .one()
+                // another writer claimed the email between the probe and the write
+                .onErrorReturn(DuplicateKeyException.class, CustomerUpdateOutcome.EMAIL_TAKEN);
+    }
+
+    /**
+     * The conditional UPDATE of {@link CustomerJDBCDataAccessService#updateCustomer} with named
+     * parameters, one per combination of changed columns indexed by the UPDATE_* bit mask.
+     */
+    private static String[] updateStatements() {
+        String[] statements = new String[(UPDATE_NAME | UPDATE_EMAIL | UPDATE_AGE) + 1];
+        for (int shape = 1; shape < statements.length; shape++) {
+            StringJoiner columns = new StringJoiner(", ");
+            StringJoiner changed = new StringJoiner(" OR ");
+            if ((shape & UPDATE_NAME) != 0) {
+                columns.add("name = :name");
+                changed.add("name IS DISTINCT FROM :name");
+            }
+            if ((shape & UPDATE_EMAIL) != 0) {
+                columns.add("email = :email");
+                changed.add("email IS DISTINCT FROM :email");
+            }
+            if ((shape & UPDATE_AGE) != 0) {
+                columns.add("age = :age");
+                changed.add("age IS DISTINCT FROM :age");
+            }
+            String emailTaken = (shape & UPDATE_EMAIL) != 0
+                    ? "EXISTS (SELECT 1 FROM customer WHERE email = :email AND id <> :id)"
+                    : "false";
+            statements[shape] = """
+                    WITH probe AS (
+                        SELECT %s AS email_taken
+                    ), updated AS (
+                        UPDATE customer
+                        SET %s
+                        WHERE id = :id
+                          AND NOT (SELECT email_taken FROM probe)
+                          AND (%s)
+                        RETURNING id
+                    )
+                    SELECT CASE
+                        WHEN EXISTS (SELECT 1 FROM updated) THEN 'UPDATED'
+                        WHEN NOT EXISTS (SELECT 1 FROM customer WHERE id = :id) THEN 'NOT_FOUND'
+                        WHEN (SELECT email_taken FROM probe) THEN 'EMAIL_TAKEN'
+                        ELSE 'UNCHANGED'
+                    END
+                    """.formatted(emailTaken, columns, changed);
+        }
+        return statements;
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionFactory instanceof Disposable disposable) {
+            disposable.dispose();
+        }
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Integer.class),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class)
+        );
+    }
+}
@@ -0,0 +1,9 @@
+package com.allancode.customer;
+
+public record CustomerRegistrationResult(int index, String email, Status status, String message) {
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+}
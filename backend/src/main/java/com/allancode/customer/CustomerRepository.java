@@ -1,11 +1,136 @@
 package com.allancode.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Repository
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
-    boolean existsCustomerByEmail(String email);
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerBatchRepository {
+    // EXISTS probes on the primary key and the email unique index instead of derived queries
+    @Query(value = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM customer
+                WHERE email = :email
+            )
+            """, nativeQuery = true)
+    boolean existsCustomerByEmail(@Param("email") String email);
+
+    @Query(value = """
+            SELECT EXISTS (
+                SELECT 1
+                FROM customer
+                WHERE id = :id
+            )
+            """, nativeQuery = true)
+    boolean existsCustomerById(@Param("id") Integer id);
+
+    // Constructor expressions build detached customers: nothing enters the persistence context, so
+    // there is no snapshot per row and no dirty checking, and the transaction never flushes.
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query("SELECT new com.allancode.customer.Customer(c.id, c.name, c.email, c.age) FROM Customer c")
+    List<Customer> findAllDetached();
+
+    @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "MANUAL")
+    })
+    @Query("""
+            SELECT new com.allancode.customer.Customer(c.id, c.name, c.email, c.age)
+            FROM Customer c
+            WHERE c.id > :afterId
+            ORDER BY c.id
+            """)
+    List<Customer> findPageDetached(@Param("afterId") Integer afterId, Limit limit);
+
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer (name, email, age)
+            VALUES (:name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Optional<Integer> insertIfEmailAbsent(@Param("name") String name,
+                                          @Param("email") String email,
+                                          @Param("age") Integer age);
+
+    // one row per array element, the emails that were free come back
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer (name, email, age)
+            SELECT *
+            FROM unnest(CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS integer[]))
+            ON CONFLICT (email) DO NOTHING
+            RETURNING email
+            """, nativeQuery = true)
+    List<String> insertAllIfEmailAbsent(@Param("names") String[] names,
+                                        @Param("emails") String[] emails,
+                                        @Param("ages") Integer[] ages);
+
+    // null parameters keep the stored value; the row is only written when something changes and
+    // the new email is free, and the statement reports which of those held
+    @Transactional
+    @Query(value = """
+            WITH probe AS (
+                SELECT EXISTS (
+                    SELECT 1
+                    FROM customer
+                    WHERE email = CAST(:email AS text) AND id <> :id
+                ) AS email_taken
+            ), updated AS (
+                UPDATE customer
+                SET name = COALESCE(CAST(:name AS text), name),
+                    email = COALESCE(CAST(:email AS text), email),
+                    age = COALESCE(CAST(:age AS integer), age)
+                WHERE id = :id
+                  AND NOT (SELECT email_taken FROM probe)
+                  AND (name IS DISTINCT FROM COALESCE(CAST(:name AS text), name)
+                    OR email IS DISTINCT FROM COALESCE(CAST(:email AS text), email)
+                    OR age IS DISTINCT FROM COALESCE(CAST(:age AS integer), age))
+                RETURNING id
+            )
+            SELECT CASE
+                WHEN EXISTS (SELECT 1 FROM updated) THEN 'UPDATED'
+                WHEN NOT EXISTS (SELECT 1 FROM customer WHERE id = :id) THEN 'NOT_FOUND'
+                WHEN (SELECT email_taken FROM probe) THEN 'EMAIL_TAKEN'
+                ELSE 'UNCHANGED'
+            END
+            """, nativeQuery = true)
+    String updateIfChanged(@Param("id") Integer id,
+                           @Param("name") String name,
+                           @Param("email") String email,
+                           @Param("age") Integer age);
+
+    // one array parameter keeps a single statement text whatever the batch size, unlike IN lists
+    @Query(value = """
+            SELECT email
+            FROM customer
+            WHERE email = ANY (:emails)
+            """, nativeQuery = true)
+    Set<String> findExistingEmails(@Param("emails") String[] emails);
 
-    boolean existsCustomerById(Integer id);
+    @Query(value = """
+            SELECT id
+            FROM customer
+            WHERE id = ANY (:ids)
+            """, nativeQuery = true)
+    Set<Integer> findExistingIds(@Param("ids") Integer[] ids);
 }
@@ -1,21 +1,102 @@
 package com.allancode.customer;
 
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
+/**
+ * Maps customer rows. {@link #mapRow} looks columns up by label for every row, which suits single
+ * rows; scans should go through {@link #listExtractor()} or {@link #forEach}, which resolve the
+ * column positions once per result set. SQL NULL maps to null, never to 0.
+ */
 @Component
 public class  CustomerRowMapper implements RowMapper<Customer> {
+    private final ResultSetExtractor<List<Customer>> listExtractor = rs -> {
+        List<Customer> customers = new ArrayList<>();
+        forEach(rs, customers::add);
+        return customers;
+    };
+
     @Override
     public Customer mapRow(ResultSet rs, int rowNum) throws SQLException {
         Customer customer = new Customer(
-                rs.getInt("id"),
+                getInteger(rs, rs.findColumn("id")),
                 rs.getString("name"),
                 rs.getString("email"),
-                rs.getInt("age")
+                getInteger(rs, rs.findColumn("age"))
         );
         return customer;
     }
+
+    public ResultSetExtractor<List<Customer>> listExtractor() {
+        return listExtractor;
+    }
+
+    /**
+     * Maps every remaining row to the consumer without collecting them.
+     */
+    public void forEach(ResultSet rs, Consumer<Customer> consumer) throws SQLException {
+        forEach(rs, Customer::new, consumer);
+    }
+
+    /**
+     * Maps every remaining row straight into whatever the factory builds, a compact record for
+     * example, without going through {@link Customer}.
+     */
+    public <T> void forEach(ResultSet rs, RowFactory<T> factory, Consumer<? super T> consumer) throws SQLException {
+        Columns columns = Columns.of(rs);
+        while (rs.next()) {
+            consumer.accept(factory.create(
+                    getInteger(rs, columns.id()),
+                    rs.getString(columns.name()),
+                    rs.getString(columns.email()),
+                    getInteger(rs, columns.age())
+            ));
+        }
+    }
+
+    private static Integer getInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    @FunctionalInterface
+    public interface RowFactory<T> {
+        T create(Integer id, String name, String email, Integer age);
+    }
+
+    /**
+     * Positions of the customer columns in one result set, read from its metadata.
+     */
+    record Columns(int id, int name, int email, int age) {
+        static Columns of(ResultSet rs) throws SQLException {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int id = 0;
+            int name = 0;
+            int email = 0;
+            int age = 0;
+            for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                switch (metaData.getColumnLabel(column).toLowerCase(Locale.ROOT)) {
+                    case "id" -> id = column;
+                    case "name" -> name = column;
+                    case "email" -> email = column;
+                    case "age" -> age = column;
+                    default -> {
+                    }
+                }
+            }
+            if (id == 0 || name == 0 || email == 0 || age == 0) {
+                throw new SQLException("result set lacks one of the customer columns id, name, email, age");
+            }
+            return new Columns(id, name, email, age);
+        }
+    }
 }
@@ -3,47 +3,149 @@ package com.allancode.customer;
 import com.allancode.exception.DuplicateResourceException;
 import com.allancode.exception.RequestValidationException;
 import com.allancode.exception.ResourceNotFoundException;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class CustomerService {
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_BATCH_SIZE = 10_000;
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+    // stackless and without request state, so each is created once and thrown on every miss
+    static final ResourceNotFoundException CUSTOMER_NOT_FOUND =
+            new ResourceNotFoundException("customer with id does not exist");
+    static final ResourceNotFoundException CUSTOMER_TO_REMOVE_NOT_FOUND =
+            new ResourceNotFoundException("Customer does not exist");
+    static final DuplicateResourceException EMAIL_TAKEN = new DuplicateResourceException("Email already taken");
+    static final DuplicateResourceException NEW_EMAIL_TAKEN = new DuplicateResourceException("email already taken");
+    static final RequestValidationException INVALID_PAGE_SIZE =
+            new RequestValidationException("page size must be between 1 and " + MAX_PAGE_SIZE);
+    static final RequestValidationException INVALID_CURSOR = new RequestValidationException("invalid page cursor");
+    static final RequestValidationException BATCH_TOO_LARGE =
+            new RequestValidationException("batch must not contain more than " + MAX_BATCH_SIZE + " customers");
+    static final RequestValidationException NO_CHANGES = new RequestValidationException("no data changes found");
+
     private final CustomerDAO customerDAO;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDAO customerDAO) {
+    public CustomerService(CustomerDAO customerDAO) {
         this.customerDAO = customerDAO;
     }
 
+    // Reads are marked read-only so a routing DataSource can serve them from a replica; SUPPORTS
+    // only sets the flag and spares them a BEGIN/COMMIT round trip.
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<Customer> getAllCustomers(){
         return customerDAO.selectAllCustomers();
     }
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public CustomerPage getCustomerPage(String cursor, int size){
+        if (size < 1 || size > MAX_PAGE_SIZE){
+            throw INVALID_PAGE_SIZE;
+        }
+        int afterId = cursor == null || cursor.isBlank() ? 0 : decodeCursor(cursor);
+
+        // fetch one extra row to know whether another page follows without a count query
+        List<Customer> customers = customerDAO.selectCustomerPage(afterId, size + 1);
+        if (customers.size() <= size){
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, size);
+        return new CustomerPage(page, encodeCursor(page.get(size - 1).getId()));
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public void exportCustomers(Integer afterId, Consumer<Customer> consumer){
+        customerDAO.streamCustomers(afterId == null ? 0 : afterId, consumer);
+    }
+
+    static String encodeCursor(Integer lastId){
+        return CURSOR_ENCODER.encodeToString(lastId.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static int decodeCursor(String cursor){
+        try {
+            return Integer.parseInt(new String(CURSOR_DECODER.decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw INVALID_CURSOR;
+        }
+    }
+
 
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Customer getCustomer(Integer id){
         return customerDAO.selectCustomerById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("customer with id does not exist"));
+                .orElseThrow(() -> CUSTOMER_NOT_FOUND);
     }
 
     public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
-        //check if email exists
-        if (customerDAO.existsCustomerWithEmail(customerRegistrationRequest.email())){
-            throw new DuplicateResourceException("Email already taken");
-        }
-        //add
         Customer customer = new Customer(customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age());
 
-        customerDAO.insertCustomer(customer);
+        //insert and detect a taken email in the same statement
+        if (customerDAO.insertCustomerIfEmailAbsent(customer).isEmpty()){
+            throw EMAIL_TAKEN;
+        }
+    }
 
+    public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> requests){
+        return addCustomers(requests, 0);
     }
 
+    public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> requests,
+                                                         int firstIndex){
+        if (requests.size() > MAX_BATCH_SIZE){
+            throw BATCH_TOO_LARGE;
+        }
+        CustomerRegistrationResult[] results = new CustomerRegistrationResult[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++){
+            CustomerRegistrationRequest request = requests.get(i);
+            if (request == null || request.name() == null || request.email() == null || request.age() == null){
+                results[i] = new CustomerRegistrationResult(firstIndex + i, request == null ? null : request.email(),
+                        CustomerRegistrationResult.Status.INVALID, "name, email and age are required");
+            } else if (candidates.putIfAbsent(request.email(), i) != null){
+                results[i] = new CustomerRegistrationResult(firstIndex + i, request.email(),
+                        CustomerRegistrationResult.Status.DUPLICATE, "Email repeated in batch");
+            }
+        }
+
+        List<Customer> customers = new ArrayList<>(candidates.size());
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()){
+            CustomerRegistrationRequest request = requests.get(candidate.getValue());
+            customers.add(new Customer(request.name(), request.email(), request.age()));
+        }
+
+        //the insert skips taken emails itself, so one claimed meanwhile is reported, not a failed batch
+        Set<String> inserted = customers.isEmpty() ? Set.of() : customerDAO.insertCustomersIfEmailAbsent(customers);
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()){
+            int i = candidate.getValue();
+            results[i] = inserted.contains(candidate.getKey())
+                    ? new CustomerRegistrationResult(firstIndex + i, candidate.getKey(),
+                            CustomerRegistrationResult.Status.CREATED, null)
+                    : new CustomerRegistrationResult(firstIndex + i, candidate.getKey(),
+                            CustomerRegistrationResult.Status.DUPLICATE, "Email already taken");
+        }
+        return Arrays.asList(results);
+    }
 
     public void removeCustomerById(Integer id){
         if (!customerDAO.existsCustomerWithId(id)){
-            throw new ResourceNotFoundException("Customer does not exist");
+            throw CUSTOMER_TO_REMOVE_NOT_FOUND;
         }
         customerDAO.deleteCustomerById(id);
     } {
@@ -51,31 +153,18 @@ public class CustomerService {
 
     public void updateCustomer(Integer customerId,
                                CustomerUpdateRequest updateRequest) {
-        //TODO: for JPA use .getReferenceById(customerId)
-        Customer customer = getCustomer(customerId);
-
-        boolean changes = false;
-
-        if (updateRequest.name() != null && !updateRequest.name().equals(customer.getName())){
-            customer.setName((updateRequest.name()));
-            changes = true;
-        }
-
-        if (updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())){
-            customer.setAge((updateRequest.age()));
-            changes = true;
-        }
-
-        if (updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())){
-            if(customerDAO.existsCustomerWithEmail(updateRequest.email())){
-                throw new DuplicateResourceException("email already taken");
+        // the DAO compares, checks the email and writes in one go, there is no read beforehand
+        Customer update = new Customer(
+                customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age());
+        switch (customerDAO.updateCustomer(update)) {
+            case UPDATED -> {
             }
-            customer.setEmail((updateRequest.email()));
-            changes = true;
-        }
-        if (!changes){
-            throw  new RequestValidationException("no data changes found");
+            case NOT_FOUND -> throw CUSTOMER_NOT_FOUND;
+            case UNCHANGED -> throw NO_CHANGES;
+            case EMAIL_TAKEN -> throw NEW_EMAIL_TAKEN;
         }
-        customerDAO.updateCustomer(customer);
     }
 }
@@ -0,0 +1,117 @@
+package com.allancode.customer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Maps customer ids to shards through a fixed number of hash buckets, so resharding moves whole
+ * buckets instead of rehashing every id. A bucket that is being moved names both its new owner and
+ * the shard it is moving from; its rows may be on either until {@link ShardedCustomerDAO#migrate()}
+ * has copied them over.
+ */
+public final class CustomerShardMap {
+    private final String[] owners;
+    private final String[] movingFrom;
+
+    private CustomerShardMap(String[] owners, String[] movingFrom) {
+        this.owners = owners;
+        this.movingFrom = movingFrom;
+    }
+
+    /**
+     * @param ranges bucket ranges and their shards; when empty the buckets are split evenly across
+     *               the shards in order
+     */
+    public static CustomerShardMap of(int bucketCount, List<String> shards, List<BucketRange> ranges) {
+        if (bucketCount < 1 || shards.isEmpty()) {
+            throw new IllegalArgumentException("a shard map needs at least one bucket and one shard");
+        }
+        String[] owners = new String[bucketCount];
+        String[] movingFrom = new String[bucketCount];
+        if (ranges.isEmpty()) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                owners[bucket] = shards.get((int) ((long) bucket * shards.size() / bucketCount));
+            }
+            return new CustomerShardMap(owners, movingFrom);
+        }
+        for (BucketRange range : ranges) {
+            if (range.from() < 0 || range.to() >= bucketCount || range.from() > range.to()) {
+                throw new IllegalArgumentException("bucket range %d-%d outside 0-%d"
+                        .formatted(range.from(), range.to(), bucketCount - 1));
+            }
+            requireShard(shards, range.shard());
+            if (range.movingFrom() != null) {
+                requireShard(shards, range.movingFrom());
+            }
+            Arrays.fill(owners, range.from(), range.to() + 1, range.shard());
+            Arrays.fill(movingFrom, range.from(), range.to() + 1,
+                    Objects.equals(range.movingFrom(), range.shard()) ? null : range.movingFrom());
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            if (owners[bucket] == null) {
+                throw new IllegalArgumentException("bucket " + bucket + " is not assigned to a shard");
+            }
+        }
+        return new CustomerShardMap(owners, movingFrom);
+    }
+
+    public int bucketCount() {
+        return owners.length;
+    }
+
+    public int bucket(int id) {
+        // murmur3 finalizer, spreads sequential ids over all buckets
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, owners.length);
+    }
+
+    public String owner(int id) {
+        return owners[bucket(id)];
+    }
+
+    /**
+     * @return the shard the id's bucket is moving away from, or null when it is not moving
+     */
+    public String movingFrom(int id) {
+        return movingFrom[bucket(id)];
+    }
+
+    public boolean isMoving() {
+        for (String shard : movingFrom) {
+            if (shard != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the same assignment with every move completed
+     */
+    public CustomerShardMap settled() {
+        return new CustomerShardMap(owners, new String[owners.length]);
+    }
+
+    private static void requireShard(List<String> shards, String shard) {
+        if (!shards.contains(shard)) {
+            throw new IllegalArgumentException("unknown shard " + shard);
+        }
+    }
+
+    /**
+     * Buckets {@code from} to {@code to}, both inclusive, owned by {@code shard}.
+     */
+    public record BucketRange(
+            int from,
+            int to,
+            String shard,
+            String movingFrom
+    ) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.allancode.customer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary image of every customer:
+ * {@code [int magic][int version][int count][rows...][int CRC32C of everything before it]}.
+ * Snapshots are written to a temporary file, forced and renamed into place, so a snapshot file
+ * either exists complete or not at all.
+ */
+final class CustomerSnapshot {
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final int NULL_LENGTH = -1;
+    private static final int NULL_AGE = Integer.MIN_VALUE;
+
+    private CustomerSnapshot() {
+    }
+
+    static void write(Path path, Collection<Customer> customers) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32C());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(customers.size());
+            for (Customer customer : customers) {
+                out.writeInt(customer.getId());
+                writeString(out, customer.getName());
+                writeString(out, customer.getEmail());
+                out.writeInt(customer.getAge() == null ? NULL_AGE : customer.getAge());
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(path.getParent());
+    }
+
+    /**
+     * Maps the snapshot and hands every customer to the consumer.
+     *
+     * @throws IOException if the file is not a complete, intact snapshot
+     */
+    static int read(Path path, Consumer<Customer> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.remaining() < Integer.BYTES * 4) {
+                throw new IOException("truncated snapshot " + path);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(snapshot.slice(0, snapshot.limit() - Integer.BYTES));
+            if ((int) crc.getValue() != snapshot.getInt(snapshot.limit() - Integer.BYTES)) {
+                throw new IOException("corrupt snapshot " + path);
+            }
+            if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+                throw new IOException("unsupported snapshot format " + path);
+            }
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = snapshot.getInt();
+                String name = readString(snapshot);
+                String email = readString(snapshot);
+                int age = snapshot.getInt();
+                consumer.accept(new Customer(id, name, email, age == NULL_AGE ? null : age));
+            }
+            return count;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // makes the rename itself durable, not every file system supports opening a directory
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
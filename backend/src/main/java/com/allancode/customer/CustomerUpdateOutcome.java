@@ -0,0 +1,14 @@
+package com.allancode.customer;
+
+/**
+ * What {@link CustomerDAO#updateCustomer} and {@link ReactiveCustomerDAO#updateCustomer} did, so callers
+ * need no read before the write.
+ */
+public enum CustomerUpdateOutcome {
+    UPDATED,
+    NOT_FOUND,
+    // every given column already held the given value
+    UNCHANGED,
+    // another customer owns the new email, nothing was written
+    EMAIL_TAKEN
+}
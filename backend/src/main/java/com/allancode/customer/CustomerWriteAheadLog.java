@@ -0,0 +1,226 @@
+package com.allancode.customer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, memory-mapped log of customer mutations. Each record is framed as
+ * {@code [int payload length][int CRC32C of payload][payload]}; the file is mapped in regions and
+ * pre-extended with zeros, so a zero length marks the end of the log. Replay stops at the first
+ * record that is truncated or fails its checksum, which is where a crash cut the log short.
+ * <p>
+ * {@link #append} only writes to the mapping. Durability is requested with {@link #sync(long)},
+ * which group-commits: one caller forces the mapping to disk and every caller waiting on a
+ * position that force covered returns with it.
+ */
+class CustomerWriteAheadLog implements AutoCloseable {
+    static final byte INSERT = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    private static final int NULL_LENGTH = -1;
+    private static final int NULL_AGE = Integer.MIN_VALUE;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long regionSize;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    private volatile MappedByteBuffer region;
+    private long regionStart;
+    private volatile long writtenPosition;
+
+    // a lock rather than a monitor, remapping does I/O and must not pin a virtual thread's carrier
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private long syncedPosition;
+    private boolean syncing;
+
+    CustomerWriteAheadLog(Path path, long regionSize) throws IOException {
+        this.path = path;
+        this.regionSize = regionSize;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * @return the log position just past this record, to pass to {@link #sync(long)}
+     */
+    long append(byte type, int id, Customer customer) {
+        appendLock.lock();
+        try {
+            return appendRecord(type, id, customer);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long appendRecord(byte type, int id, Customer customer) {
+        scratch.clear();
+        scratch.put(type).putInt(id);
+        if (type != DELETE) {
+            putString(customer.getName());
+            putString(customer.getEmail());
+            ensureScratch(Integer.BYTES);
+            scratch.putInt(customer.getAge() == null ? NULL_AGE : customer.getAge());
+        }
+        scratch.flip();
+        crc.reset();
+        crc.update(scratch.duplicate());
+
+        int length = scratch.remaining();
+        long position = regionStart + region.position();
+        if (region.remaining() < HEADER_BYTES + length) {
+            remap(position, HEADER_BYTES + length);
+        }
+        region.putInt(length).putInt((int) crc.getValue()).put(scratch);
+        writtenPosition = position + HEADER_BYTES + length;
+        return writtenPosition;
+    }
+
+    /**
+     * Blocks until everything up to {@code position} has been forced to disk.
+     */
+    void sync(long position) {
+        syncLock.lock();
+        try {
+            while (syncedPosition < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = writtenPosition;
+                syncLock.unlock();
+                try {
+                    region.force();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                }
+                syncedPosition = Math.max(syncedPosition, target);
+                synced.signalAll();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    void syncAll() {
+        sync(writtenPosition);
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncAll();
+        channel.close();
+    }
+
+    /**
+     * Reads records from the start of the log until its end or the first damaged record.
+     *
+     * @return the number of records replayed
+     */
+    static int replay(Path path, Consumer<Mutation> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C crc = new CRC32C();
+            int records = 0;
+            while (log.remaining() >= HEADER_BYTES) {
+                int length = log.getInt();
+                int checksum = log.getInt();
+                if (length <= 0 || length > log.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = log.slice(log.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                log.position(log.position() + length);
+                consumer.accept(decode(payload));
+                records++;
+            }
+            return records;
+        }
+    }
+
+    private static Mutation decode(ByteBuffer payload) {
+        byte type = payload.get();
+        int id = payload.getInt();
+        if (type == DELETE) {
+            return new Mutation(type, new Customer(id, null, null, null));
+        }
+        String name = getString(payload);
+        String email = getString(payload);
+        int age = payload.getInt();
+        return new Mutation(type, new Customer(id, name, email, age == NULL_AGE ? null : age));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureScratch(Integer.BYTES);
+            scratch.putInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(Integer.BYTES + bytes.length);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    private void ensureScratch(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            scratch = larger.put(scratch);
+        }
+    }
+
+    // the old region is forced before it is dropped so sync() only ever has to force the current one
+    private void remap(long position, int required) {
+        try {
+            region.force();
+            MappedByteBuffer next = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(regionSize, required));
+            channel.force(true);
+            regionStart = position;
+            region = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not extend write-ahead log " + path, e);
+        }
+    }
+
+    /**
+     * A replayed log record. Updates carry null for fields that were not changed, deletes only the id.
+     */
+    record Mutation(byte type, Customer customer) {
+    }
+}
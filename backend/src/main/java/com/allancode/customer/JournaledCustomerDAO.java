@@ -0,0 +1,403 @@
+package com.allancode.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Makes the in-memory {@link CustomerDataAccessService} durable. Every mutation is applied to the
+ * store and appended to a {@link CustomerWriteAheadLog} under one lock, so the log order is the
+ * order the store saw; the caller then waits for the log according to the {@link FsyncPolicy}.
+ * Reads go straight to the store.
+ * <p>
+ * State on disk is a snapshot of generation {@code n} plus the logs of generation {@code n} and
+ * later. {@link #open()} restores the newest readable snapshot, replays the logs after it and
+ * compacts everything into a new snapshot. {@link #snapshot()} starts a new log generation and
+ * copies the store while holding the write lock, then writes the snapshot without it.
+ */
+public class JournaledCustomerDAO implements CustomerDAO, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(JournaledCustomerDAO.class);
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String LOG_SUFFIX = ".wal";
+
+    public enum FsyncPolicy {
+        /** Each write waits for a group-committed force of the log. */
+        ALWAYS,
+        /** The log is forced on a fixed interval, a crash loses at most that much. */
+        INTERVAL,
+        /** The log is left to the operating system to write back. */
+        NONE
+    }
+
+    private final CustomerDataAccessService delegate;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long logRegionSize;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // locks rather than monitors throughout, so file I/O never pins a virtual thread's carrier
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CustomerWriteAheadLog writeAheadLog;
+    private long generation;
+
+    public JournaledCustomerDAO(CustomerDataAccessService delegate,
+                                Path directory,
+                                FsyncPolicy fsyncPolicy,
+                                long logRegionSize) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.logRegionSize = logRegionSize;
+    }
+
+    /**
+     * Restores the store from the journal directory, or journals the store as it is if the
+     * directory is empty, and starts a new log.
+     *
+     * @return the number of log records replayed
+     */
+    public int open() throws IOException {
+        snapshotLock.lock();
+        try {
+            return restore();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private int restore() throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> snapshots = files(SNAPSHOT_SUFFIX);
+        TreeMap<Long, Path> logs = files(LOG_SUFFIX);
+
+        int replayed = 0;
+        if (!snapshots.isEmpty() || !logs.isEmpty()) {
+            delegate.clear();
+            long base = restoreNewestSnapshot(snapshots, logs);
+            for (Path logPath : logs.tailMap(base, true).values()) {
+                replayed += CustomerWriteAheadLog.replay(logPath, this::apply);
+            }
+            generation = Math.max(
+                    snapshots.isEmpty() ? 0 : snapshots.lastKey(),
+                    logs.isEmpty() ? 0 : logs.lastKey());
+        }
+        snapshot();
+        return replayed;
+    }
+
+    public void scheduleSync(Duration interval) {
+        scheduler.scheduleWithFixedDelay(this::syncLog,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void scheduleSnapshots(Duration interval) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                log.warn("customer snapshot failed, the write-ahead log keeps growing until one succeeds", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a snapshot of the current state and drops the files it makes obsolete.
+     */
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            writeSnapshot();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        CustomerWriteAheadLog previous;
+        List<Customer> customers;
+        long snapshotGeneration;
+        writeLock.lock();
+        try {
+            snapshotGeneration = ++generation;
+            previous = writeAheadLog;
+            writeAheadLog = new CustomerWriteAheadLog(path(snapshotGeneration, LOG_SUFFIX), logRegionSize);
+            customers = delegate.selectAllCustomers();
+        } finally {
+            writeLock.unlock();
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        CustomerSnapshot.write(path(snapshotGeneration, SNAPSHOT_SUFFIX), customers);
+
+        for (TreeMap<Long, Path> obsolete : List.of(files(SNAPSHOT_SUFFIX), files(LOG_SUFFIX))) {
+            for (Path path : obsolete.headMap(snapshotGeneration).values()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        writeLock.lock();
+        try {
+            if (writeAheadLog != null) {
+                writeAheadLog.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return delegate.selectCustomerPage(afterId, limit);
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        delegate.streamCustomers(afterId, consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        if (insertCustomerIfEmailAbsent(customer).isEmpty()) {
+            throw new DuplicateKeyException("email already taken: " + customer.getEmail());
+        }
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        Optional<Integer> id;
+        CustomerWriteAheadLog target;
+        long position;
+        writeLock.lock();
+        try {
+            id = delegate.insertCustomerIfEmailAbsent(customer);
+            if (id.isEmpty()) {
+                return id;
+            }
+            target = writeAheadLog;
+            position = target.append(CustomerWriteAheadLog.INSERT, id.get(), customer);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(target, position);
+        return id;
+    }
+
+    /**
+     * Rejects the whole batch before applying any of it when one of its emails is taken or repeated.
+     * Whatever was applied is durable before this returns or throws.
+     */
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        CustomerWriteAheadLog target = null;
+        long position = 0;
+        writeLock.lock();
+        try {
+            Set<String> emails = new HashSet<>();
+            for (Customer customer : customers) {
+                if (!emails.add(customer.getEmail()) || delegate.existsCustomerWithEmail(customer.getEmail())) {
+                    throw new DuplicateKeyException("email already taken: " + customer.getEmail());
+                }
+            }
+            target = writeAheadLog;
+            for (Customer customer : customers) {
+                Integer id = delegate.insertCustomerIfEmailAbsent(customer).orElseThrow(() ->
+                        new DuplicateKeyException("email already taken: " + customer.getEmail()));
+                position = target.append(CustomerWriteAheadLog.INSERT, id, customer);
+            }
+        } finally {
+            writeLock.unlock();
+            if (position > 0) {
+                awaitDurable(target, position);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        Set<String> inserted = new HashSet<>();
+        CustomerWriteAheadLog target = null;
+        long position = 0;
+        writeLock.lock();
+        try {
+            target = writeAheadLog;
+            for (Customer customer : customers) {
+                Optional<Integer> id = delegate.insertCustomerIfEmailAbsent(customer);
+                if (id.isPresent()) {
+                    position = target.append(CustomerWriteAheadLog.INSERT, id.get(), customer);
+                    inserted.add(customer.getEmail());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+            if (position > 0) {
+                awaitDurable(target, position);
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return delegate.existsCustomerWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        CustomerWriteAheadLog target;
+        long position;
+        writeLock.lock();
+        try {
+            delegate.deleteCustomerById(customerId);
+            target = writeAheadLog;
+            position = target.append(CustomerWriteAheadLog.DELETE, customerId, null);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(target, position);
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return delegate.existsCustomerWithId(id);
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        return delegate.selectExistingIds(ids);
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        CustomerUpdateOutcome outcome;
+        CustomerWriteAheadLog target;
+        long position;
+        writeLock.lock();
+        try {
+            outcome = delegate.updateCustomer(update);
+            if (outcome != CustomerUpdateOutcome.UPDATED) {
+                // nothing changed, nothing to replay
+                return outcome;
+            }
+            target = writeAheadLog;
+            position = target.append(CustomerWriteAheadLog.UPDATE, update.getId(), update);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(target, position);
+        return outcome;
+    }
+
+    private void awaitDurable(CustomerWriteAheadLog target, long position) {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            target.sync(position);
+        }
+    }
+
+    private void syncLog() {
+        CustomerWriteAheadLog target;
+        writeLock.lock();
+        try {
+            target = writeAheadLog;
+        } finally {
+            writeLock.unlock();
+        }
+        if (target != null) {
+            target.syncAll();
+        }
+    }
+
+    private void apply(CustomerWriteAheadLog.Mutation mutation) {
+        Customer customer = mutation.customer();
+        switch (mutation.type()) {
+            case CustomerWriteAheadLog.INSERT -> delegate.insertCustomer(customer);
+            case CustomerWriteAheadLog.UPDATE -> delegate.updateCustomer(customer);
+            case CustomerWriteAheadLog.DELETE -> delegate.deleteCustomerById(customer.getId());
+            default -> throw new IllegalStateException("unknown log record type " + mutation.type());
+        }
+    }
+
+    /**
+     * Falls back to an older snapshot only while the logs of every generation since it are still
+     * there, an older snapshot without them would silently drop the writes in between.
+     */
+    private long restoreNewestSnapshot(TreeMap<Long, Path> snapshots, TreeMap<Long, Path> logs) {
+        for (Long snapshotGeneration : snapshots.descendingKeySet()) {
+            long newest = snapshots.lastKey();
+            if (snapshotGeneration != newest
+                    && logs.subMap(snapshotGeneration, true, newest, true).size() != newest - snapshotGeneration + 1) {
+                throw new IllegalStateException("customer snapshot " + snapshots.get(newest)
+                        + " is unreadable and the logs since snapshot " + snapshots.get(snapshotGeneration)
+                        + " are gone, restoring it would lose writes");
+            }
+            try {
+                CustomerSnapshot.read(snapshots.get(snapshotGeneration), delegate::insertCustomer);
+                return snapshotGeneration;
+            } catch (IOException e) {
+                log.warn("skipping unreadable customer snapshot {}", snapshots.get(snapshotGeneration), e);
+                delegate.clear();
+            }
+        }
+        if (!snapshots.isEmpty()) {
+            throw new IllegalStateException("no readable customer snapshot in " + directory);
+        }
+        return 0;
+    }
+
+    private TreeMap<Long, Path> files(String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (name.startsWith("customers-") && name.endsWith(suffix)) {
+                    files.put(Long.parseLong(name, "customers-".length(), name.length() - suffix.length(), 10), path);
+                }
+            });
+        }
+        return files;
+    }
+
+    private Path path(long fileGeneration, String suffix) {
+        return directory.resolve("customers-%016d%s".formatted(fileGeneration, suffix));
+    }
+}
@@ -0,0 +1,208 @@
+package com.allancode.customer;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Times every call into the wrapped {@link CustomerDAO} as customer.dao, tagged with the backend,
+ * the method and an outcome: "success", what the call found where that differs ("found"/"missing",
+ * "inserted"/"email_taken", the {@link CustomerUpdateOutcome}), or "error" with the exception.
+ * The timers of the normal outcomes are registered up front, so a call only reads the clock twice
+ * and records, without a meter lookup.
+ */
+public class MeteredCustomerDAO implements CustomerDAO {
+    static final String TIMER_NAME = "customer.dao";
+
+    private final CustomerDAO delegate;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final String backend;
+    private final Timer selectAll;
+    private final Timer selectPage;
+    private final Timer stream;
+    private final Timer selectByIdFound;
+    private final Timer selectByIdMissing;
+    private final Timer insert;
+    private final Timer insertIfAbsentInserted;
+    private final Timer insertIfAbsentTaken;
+    private final Timer insertBatch;
+    private final Timer insertBatchIfAbsent;
+    private final Timer existsEmail;
+    private final Timer existingEmails;
+    private final Timer delete;
+    private final Timer existsId;
+    private final Timer existingIds;
+    private final Timer[] update = new Timer[CustomerUpdateOutcome.values().length];
+
+    public MeteredCustomerDAO(CustomerDAO delegate, MeterRegistry meterRegistry, String backend) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.clock = meterRegistry.config().clock();
+        this.backend = backend;
+        this.selectAll = timer("selectAllCustomers", "success", "none");
+        this.selectPage = timer("selectCustomerPage", "success", "none");
+        this.stream = timer("streamCustomers", "success", "none");
+        this.selectByIdFound = timer("selectCustomerById", "found", "none");
+        this.selectByIdMissing = timer("selectCustomerById", "missing", "none");
+        this.insert = timer("insertCustomer", "success", "none");
+        this.insertIfAbsentInserted = timer("insertCustomerIfEmailAbsent", "inserted", "none");
+        this.insertIfAbsentTaken = timer("insertCustomerIfEmailAbsent", "email_taken", "none");
+        this.insertBatch = timer("insertCustomers", "success", "none");
+        this.insertBatchIfAbsent = timer("insertCustomersIfEmailAbsent", "success", "none");
+        this.existsEmail = timer("existsCustomerWithEmail", "success", "none");
+        this.existingEmails = timer("selectExistingEmails", "success", "none");
+        this.delete = timer("deleteCustomerById", "success", "none");
+        this.existsId = timer("existsCustomerWithId", "success", "none");
+        this.existingIds = timer("selectExistingIds", "success", "none");
+        for (CustomerUpdateOutcome outcome : CustomerUpdateOutcome.values()) {
+            update[outcome.ordinal()] = timer("updateCustomer", outcome.name().toLowerCase(), "none");
+        }
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return record(selectAll, delegate::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return record(selectPage, () -> delegate.selectCustomerPage(afterId, limit));
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        // includes the time the consumer spends writing each customer out
+        record(stream, () -> {
+            delegate.streamCustomers(afterId, consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        long start = clock.monotonicTime();
+        try {
+            Optional<Customer> customer = delegate.selectCustomerById(id);
+            stop(customer.isPresent() ? selectByIdFound : selectByIdMissing, start);
+            return customer;
+        } catch (RuntimeException e) {
+            failed("selectCustomerById", start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        record(insert, () -> {
+            delegate.insertCustomer(customer);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        long start = clock.monotonicTime();
+        try {
+            Optional<Integer> id = delegate.insertCustomerIfEmailAbsent(customer);
+            stop(id.isPresent() ? insertIfAbsentInserted : insertIfAbsentTaken, start);
+            return id;
+        } catch (RuntimeException e) {
+            failed("insertCustomerIfEmailAbsent", start, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        record(insertBatch, () -> {
+            delegate.insertCustomers(customers);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        return record(insertBatchIfAbsent, () -> delegate.insertCustomersIfEmailAbsent(customers));
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        return record(existsEmail, () -> delegate.existsCustomerWithEmail(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return record(existingEmails, () -> delegate.selectExistingEmails(emails));
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        record(delete, () -> {
+            delegate.deleteCustomerById(customerId);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return record(existsId, () -> delegate.existsCustomerWithId(id));
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        return record(existingIds, () -> delegate.selectExistingIds(ids));
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        long start = clock.monotonicTime();
+        try {
+            CustomerUpdateOutcome outcome = delegate.updateCustomer(update);
+            stop(this.update[outcome.ordinal()], start);
+            return outcome;
+        } catch (RuntimeException e) {
+            failed("updateCustomer", start, e);
+            throw e;
+        }
+    }
+
+    private <T> T record(Timer timer, Supplier<T> call) {
+        long start = clock.monotonicTime();
+        try {
+            T result = call.get();
+            stop(timer, start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(timer.getId().getTag("method"), start, e);
+            throw e;
+        }
+    }
+
+    private void stop(Timer timer, long start) {
+        timer.record(clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // failures are rare, their timers are looked up when they happen
+    private void failed(String method, long start, RuntimeException e) {
+        stop(timer(method, "error", e.getClass().getSimpleName()), start);
+    }
+
+    private Timer timer(String method, String outcome, String exception) {
+        return Timer.builder(TIMER_NAME)
+                .description("Calls into the customer data access layer")
+                .tag("backend", backend)
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+}
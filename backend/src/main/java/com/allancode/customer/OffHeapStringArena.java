@@ -0,0 +1,97 @@
+package com.allancode.customer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only UTF-8 string storage in direct (off-heap) buffers. Each string is written as a
+ * 4 byte length followed by its bytes and is addressed by a long reference: chunk index in the
+ * high 32 bits, offset in the low 32 bits. Not thread safe, callers synchronise.
+ */
+class OffHeapStringArena {
+    static final long NULL_REF = -1L;
+
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long allocatedBytes;
+    private long usedBytes;
+    private long garbageBytes;
+
+    OffHeapStringArena(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    long append(String value) {
+        if (value == null) {
+            return NULL_REF;
+        }
+        return append(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long append(byte[] bytes) {
+        int required = Integer.BYTES + bytes.length;
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < required) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, required));
+            chunks.add(chunk);
+            allocatedBytes += chunk.capacity();
+        }
+        int offset = chunk.position();
+        chunk.putInt(bytes.length).put(bytes);
+        usedBytes += required;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    String read(long ref) {
+        if (ref == NULL_REF) {
+            return null;
+        }
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    boolean contentEquals(long ref, byte[] bytes) {
+        if (ref == NULL_REF) {
+            return false;
+        }
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        int start = offset + Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(start + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks a string as no longer referenced. The bytes stay allocated, the arena never compacts.
+     */
+    void release(long ref) {
+        if (ref != NULL_REF) {
+            ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+            garbageBytes += Integer.BYTES + chunk.getInt((int) ref);
+        }
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long garbageBytes() {
+        return garbageBytes;
+    }
+}
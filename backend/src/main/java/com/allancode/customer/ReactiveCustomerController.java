@@ -0,0 +1,79 @@
+package com.allancode.customer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * The routes of {@link CustomerController} on WebFlux, active when the application is started with
+ * spring.main.web-application-type=reactive.
+ */
+@RestController
+@RequestMapping(path = "/api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+    private static final int REGISTRATION_CHUNK_SIZE = 1000;
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    // written out as a JSON array element by element, rows are fetched as the client reads
+    @GetMapping("/all")
+    public Flux<Customer> getCustomers(){
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping
+    public Mono<CustomerPage> getCustomerPage(@RequestParam(name = "cursor", required = false) String cursor,
+                                              @RequestParam(name = "size", defaultValue = "50") int size){
+        return customerService.getCustomerPage(cursor, size);
+    }
+
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers(@RequestParam(name = "afterId", defaultValue = "0") Integer afterId){
+        return customerService.exportCustomers(afterId);
+    }
+
+    @GetMapping("/{customerId}")
+    public Mono<Customer> getCustomer(@PathVariable("customerId") Integer customerId){
+        return customerService.getCustomer(customerId);
+    }
+
+    @PostMapping
+    public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request){
+        return customerService.addCustomer(request);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<List<CustomerRegistrationResult>> registerCustomers(@RequestBody List<CustomerRegistrationRequest> requests){
+        return customerService.addCustomers(requests);
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CustomerRegistrationResult> registerCustomerStream(@RequestBody Flux<CustomerRegistrationRequest> requests){
+        return requests.buffer(REGISTRATION_CHUNK_SIZE)
+                .index()
+                .concatMap(chunk -> customerService.addCustomers(
+                        chunk.getT2(), Math.toIntExact(chunk.getT1() * REGISTRATION_CHUNK_SIZE)))
+                .flatMapIterable(results -> results);
+    }
+
+    @DeleteMapping("/delete/{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Integer customerId){
+        return customerService.removeCustomerById(customerId);
+    }
+
+    @PutMapping("/update/{customerId}")
+    public Mono<Void> updateCustomer(@PathVariable("customerId") Integer customerId,
+                                     @RequestBody CustomerUpdateRequest updateRequest) {
+        return customerService.updateCustomer(customerId, updateRequest);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.allancode.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDAO}. Flux results are produced as rows arrive and
+ * honour downstream demand.
+ */
+public interface ReactiveCustomerDAO {
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomerPage(Integer afterId, int limit);
+    Flux<Customer> streamCustomers(Integer afterId);
+    Mono<Customer> selectCustomerById(Integer id);
+    /**
+     * @return the id of the new customer, or empty if the email is already taken
+     */
+    Mono<Integer> insertCustomerIfEmailAbsent(Customer customer);
+    Mono<Void> insertCustomers(List<Customer> customers);
+    /**
+     * @return the emails of the customers inserted, the others were taken when the insert ran
+     */
+    Flux<String> insertCustomersIfEmailAbsent(List<Customer> customers);
+    Mono<Boolean> existsCustomerWithEmail(String email);
+    Flux<String> selectExistingEmails(Collection<String> emails);
+    Mono<Void> deleteCustomerById(Integer customerId);
+    Mono<Boolean> existsCustomerWithId(Integer id);
+    /**
+     * Writes the non-null fields of {@code update} in one statement, see {@link CustomerDAO#updateCustomer}.
+     */
+    Mono<CustomerUpdateOutcome> updateCustomer(Customer update);
+}
@@ -0,0 +1,156 @@
+package com.allancode.customer;
+
+import com.allancode.exception.RequestValidationException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.allancode.customer.CustomerService.BATCH_TOO_LARGE;
+import static com.allancode.customer.CustomerService.CUSTOMER_NOT_FOUND;
+import static com.allancode.customer.CustomerService.CUSTOMER_TO_REMOVE_NOT_FOUND;
+import static com.allancode.customer.CustomerService.EMAIL_TAKEN;
+import static com.allancode.customer.CustomerService.INVALID_PAGE_SIZE;
+import static com.allancode.customer.CustomerService.MAX_BATCH_SIZE;
+import static com.allancode.customer.CustomerService.MAX_PAGE_SIZE;
+import static com.allancode.customer.CustomerService.NEW_EMAIL_TAKEN;
+import static com.allancode.customer.CustomerService.NO_CHANGES;
+
+/**
+ * {@link CustomerService} for the reactive stack, same rules and errors on {@link ReactiveCustomerDAO}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+    private final ReactiveCustomerDAO customerDAO;
+
+    public ReactiveCustomerService(ReactiveCustomerDAO customerDAO) {
+        this.customerDAO = customerDAO;
+    }
+
+    public Flux<Customer> getAllCustomers(){
+        return customerDAO.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomerPage(String cursor, int size){
+        if (size < 1 || size > MAX_PAGE_SIZE){
+            return Mono.error(INVALID_PAGE_SIZE);
+        }
+        int afterId;
+        try {
+            afterId = cursor == null || cursor.isBlank() ? 0 : CustomerService.decodeCursor(cursor);
+        } catch (RequestValidationException e) {
+            return Mono.error(e);
+        }
+
+        // fetch one extra row to know whether another page follows without a count query
+        return customerDAO.selectCustomerPage(afterId, size + 1)
+                .collectList()
+                .map(customers -> {
+                    if (customers.size() <= size){
+                        return new CustomerPage(customers, null);
+                    }
+                    List<Customer> page = customers.subList(0, size);
+                    return new CustomerPage(page, CustomerService.encodeCursor(page.get(size - 1).getId()));
+                });
+    }
+
+    public Flux<Customer> exportCustomers(Integer afterId){
+        return customerDAO.streamCustomers(afterId == null ? 0 : afterId);
+    }
+
+    public Mono<Customer> getCustomer(Integer id){
+        return customerDAO.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(CUSTOMER_NOT_FOUND));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
+        Customer customer = new Customer(customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age());
+
+        //insert and detect a taken email in the same statement
+        return customerDAO.insertCustomerIfEmailAbsent(customer)
+                .switchIfEmpty(Mono.error(EMAIL_TAKEN))
+                .then();
+    }
+
+    public Mono<List<CustomerRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> requests){
+        return addCustomers(requests, 0);
+    }
+
+    public Mono<List<CustomerRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> requests,
+                                                               int firstIndex){
+        if (requests.size() > MAX_BATCH_SIZE){
+            return Mono.error(BATCH_TOO_LARGE);
+        }
+        CustomerRegistrationResult[] results = new CustomerRegistrationResult[requests.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < requests.size(); i++){
+            CustomerRegistrationRequest request = requests.get(i);
+            if (request == null || request.name() == null || request.email() == null || request.age() == null){
+                results[i] = new CustomerRegistrationResult(firstIndex + i, request == null ? null : request.email(),
+                        CustomerRegistrationResult.Status.INVALID, "name, email and age are required");
+            } else if (candidates.putIfAbsent(request.email(), i) != null){
+                results[i] = new CustomerRegistrationResult(firstIndex + i, request.email(),
+                        CustomerRegistrationResult.Status.DUPLICATE, "Email repeated in batch");
+            }
+        }
+        if (candidates.isEmpty()){
+            return Mono.just(Arrays.asList(results));
+        }
+
+        List<Customer> customers = new ArrayList<>(candidates.size());
+        for (Map.Entry<String, Integer> candidate : candidates.entrySet()){
+            CustomerRegistrationRequest request = requests.get(candidate.getValue());
+            customers.add(new Customer(request.name(), request.email(), request.age()));
+        }
+
+        //the insert skips taken emails itself, so one claimed meanwhile is reported, not a failed batch
+        return customerDAO.insertCustomersIfEmailAbsent(customers)
+                .collect(HashSet<String>::new, Set::add)
+                .map(inserted -> {
+                    for (Map.Entry<String, Integer> candidate : candidates.entrySet()){
+                        int i = candidate.getValue();
+                        results[i] = inserted.contains(candidate.getKey())
+                                ? new CustomerRegistrationResult(firstIndex + i, candidate.getKey(),
+                                        CustomerRegistrationResult.Status.CREATED, null)
+                                : new CustomerRegistrationResult(firstIndex + i, candidate.getKey(),
+                                        CustomerRegistrationResult.Status.DUPLICATE, "Email already taken");
+                    }
+                    return Arrays.asList(results);
+                });
+    }
+
+    public Mono<Void> removeCustomerById(Integer id){
+        return customerDAO.existsCustomerWithId(id)
+                .flatMap(exists -> exists
+                        ? customerDAO.deleteCustomerById(id)
+                        : Mono.error(CUSTOMER_TO_REMOVE_NOT_FOUND));
+    }
+
+    public Mono<Void> updateCustomer(Integer customerId,
+                                     CustomerUpdateRequest updateRequest) {
+        // the DAO compares, checks the email and writes in one go, there is no read beforehand
+        Customer update = new Customer(
+                customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age());
+        return customerDAO.updateCustomer(update).flatMap(outcome -> switch (outcome) {
+            case UPDATED -> Mono.empty();
+            case NOT_FOUND -> Mono.error(CUSTOMER_NOT_FOUND);
+            case UNCHANGED -> Mono.error(NO_CHANGES);
+            case EMAIL_TAKEN -> Mono.error(NEW_EMAIL_TAKEN);
+        });
+    }
+}
@@ -0,0 +1,635 @@
+package com.allancode.customer;
+
+import com.allancode.datasource.DatabaseRoundTrips;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Spreads customers over several databases by a hash of their id, each shard running
+ * {@link CustomerJDBCDataAccessService}'s SQL against its own customer table. The directory
+ * database hands out ids from customer_id_seq and keeps email uniqueness global in
+ * customer_email_directory, since each shard only enforces its own UNIQUE(email). Queries spanning
+ * all customers run on every shard in parallel and merge the id-ordered results.
+ * <p>
+ * Resharding is online: buckets marked as moving get their new rows on their new shard, while
+ * {@link #migrate()} moves their remaining rows. Reads and writes of a moving bucket's rows go to
+ * the shard it is moving from first, whose row is current until the migration deletes it. Reads and
+ * writes never wait for the migration as a whole, but the migration waits for the operations in
+ * flight on this instance, so it assumes this is the only instance writing.
+ */
+public class ShardedCustomerDAO implements CustomerDAO, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedCustomerDAO.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final JdbcTemplate directory;
+    private final Map<String, DataSource> dataSources;
+    private final Map<String, CustomerJDBCDataAccessService> shards = new LinkedHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // completed when their operation ends, so the migration can wait out those in flight
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object shardMapSwitch = new Object();
+    private volatile CustomerShardMap shardMap;
+
+    /**
+     * @param dataSources shard databases by name, closed with this DAO
+     */
+    public ShardedCustomerDAO(JdbcTemplate directory,
+                              Map<String, DataSource> dataSources,
+                              CustomerShardMap shardMap,
+                              CustomerRowMapper customerRowMapper) {
+        this.directory = directory;
+        this.dataSources = dataSources;
+        this.shardMap = shardMap;
+        dataSources.forEach((name, dataSource) -> shards.put(name,
+                new CustomerJDBCDataAccessService(new JdbcTemplate(dataSource), customerRowMapper)));
+    }
+
+    public CustomerShardMap shardMap() {
+        return shardMap;
+    }
+
+    /**
+     * Claims the emails of the customers already on the shards that the directory is missing, as
+     * after it was first created, a page at a time. Run before serving, claims made meanwhile are
+     * kept.
+     *
+     * @return the number of claims added
+     */
+    public long backfillEmailDirectory() {
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                SELECT email, customer_id
+                FROM unnest(?::text[], ?::int[]) AS claimed(email, customer_id)
+                ON CONFLICT (email) DO NOTHING
+                """;
+        long claimed = 0;
+        for (CustomerJDBCDataAccessService shard : shards.values()) {
+            int afterId = 0;
+            while (true) {
+                List<Customer> page = shard.selectCustomerPage(afterId, PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+                Object[] emails = page.stream().map(Customer::getEmail).toArray();
+                Object[] ids = page.stream().map(Customer::getId).toArray();
+                claimed += directory.update(sql, ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("text", emails));
+                    ps.setArray(2, ps.getConnection().createArrayOf("int4", ids));
+                });
+                afterId = page.get(page.size() - 1).getId();
+            }
+        }
+        if (claimed > 0) {
+            log.info("Claimed {} emails of customers already on the shards", claimed);
+        }
+        return claimed;
+    }
+
+    /**
+     * Switches to a new shard map, typically one moving buckets to another shard, and returns once
+     * no operation still uses the previous one. Follow it with {@link #migrate()}.
+     */
+    public void reshard(CustomerShardMap shardMap) {
+        synchronized (shardMapSwitch) {
+            this.shardMap = shardMap;
+        }
+        awaitInFlight();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return tracked(() -> {
+            CustomerShardMap map = shardMap;
+            return merge(map, scatter(shard -> {
+                List<Customer> customers = new ArrayList<>();
+                shard.streamCustomers(0, customers::add);
+                return customers;
+            }), Integer.MAX_VALUE);
+        });
+    }
+
+    @Override
+    public List<Customer> selectCustomerPage(Integer afterId, int limit) {
+        return tracked(() -> {
+            CustomerShardMap map = shardMap;
+            return merge(map, scatter(shard -> shard.selectCustomerPage(afterId, limit)), limit);
+        });
+    }
+
+    @Override
+    public void streamCustomers(Integer afterId, Consumer<Customer> consumer) {
+        int after = afterId;
+        while (true) {
+            int from = after;
+            // a shard that filled its page may have more rows below another shard's last id,
+            // so only rows up to the lowest last id of a full page are complete
+            int[] complete = {Integer.MAX_VALUE};
+            List<Customer> customers = tracked(() -> {
+                CustomerShardMap map = shardMap;
+                List<List<Customer>> pages = scatter(shard -> shard.selectCustomerPage(from, PAGE_SIZE));
+                for (List<Customer> page : pages) {
+                    if (page.size() == PAGE_SIZE) {
+                        complete[0] = Math.min(complete[0], page.get(PAGE_SIZE - 1).getId());
+                    }
+                }
+                return merge(map, pages, Integer.MAX_VALUE);
+            });
+            for (Customer customer : customers) {
+                if (customer.getId() > complete[0]) {
+                    break;
+                }
+                consumer.accept(customer);
+            }
+            if (complete[0] == Integer.MAX_VALUE) {
+                return;
+            }
+            after = complete[0];
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return tracked(() -> {
+            CustomerShardMap map = shardMap;
+            if (map.movingFrom(id) != null) {
+                Optional<Customer> customer = shards.get(map.movingFrom(id)).selectCustomerById(id);
+                if (customer.isPresent()) {
+                    return customer;
+                }
+            }
+            return shards.get(map.owner(id)).selectCustomerById(id);
+        });
+    }
+
+    @Override
+    public void insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                VALUES (?, nextval('customer_id_seq'))
+                RETURNING customer_id
+                """;
+        Integer id = directory.queryForObject(sql, Integer.class, customer.getEmail());
+        insertClaimed(id, customer);
+    }
+
+    @Override
+    public Optional<Integer> insertCustomerIfEmailAbsent(Customer customer) {
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                VALUES (?, nextval('customer_id_seq'))
+                ON CONFLICT (email) DO NOTHING
+                RETURNING customer_id
+                """;
+        Optional<Integer> id = directory.query(sql, (rs, rowNum) -> rs.getInt("customer_id"), customer.getEmail())
+                .stream()
+                .findFirst();
+        id.ifPresent(claimed -> insertClaimed(claimed, customer));
+        return id;
+    }
+
+    @Override
+    public void insertCustomers(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                SELECT email, nextval('customer_id_seq')
+                FROM unnest(?::text[]) AS claimed(email)
+                RETURNING email, customer_id
+                """;
+        insertClaimed(customers, claimEmails(sql, customers));
+    }
+
+    @Override
+    public Set<String> insertCustomersIfEmailAbsent(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                SELECT email, nextval('customer_id_seq')
+                FROM unnest(?::text[]) AS claimed(email)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING email, customer_id
+                """;
+        Map<String, Integer> ids = claimEmails(sql, customers);
+        Map<String, Customer> claimed = new LinkedHashMap<>();
+        for (Customer customer : customers) {
+            if (ids.containsKey(customer.getEmail())) {
+                claimed.putIfAbsent(customer.getEmail(), customer);
+            }
+        }
+        insertClaimed(List.copyOf(claimed.values()), ids);
+        return ids.keySet();
+    }
+
+    private Map<String, Integer> claimEmails(String sql, List<Customer> customers) {
+        String[] emails = customers.stream().map(Customer::getEmail).toArray(String[]::new);
+        Map<String, Integer> ids = new HashMap<>(customers.size() * 2);
+        directory.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails)),
+                rs -> {
+                    ids.put(rs.getString("email"), rs.getInt("customer_id"));
+                });
+        return ids;
+    }
+
+    private void insertClaimed(List<Customer> customers, Map<String, Integer> ids) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        tracked(() -> {
+            CustomerShardMap map = shardMap;
+            Map<String, List<Customer>> byShard = new LinkedHashMap<>();
+            for (Customer customer : customers) {
+                Customer claimed = new Customer(ids.get(customer.getEmail()),
+                        customer.getName(), customer.getEmail(), customer.getAge());
+                byShard.computeIfAbsent(map.owner(claimed.getId()), shard -> new ArrayList<>()).add(claimed);
+            }
+            try {
+                join(byShard.entrySet().stream()
+                        .map(entry -> CompletableFuture.supplyAsync(DatabaseRoundTrips.propagate(() -> {
+                            shards.get(entry.getKey()).insertCustomersWithIds(entry.getValue());
+                            return null;
+                        }), executor))
+                        .toList());
+            } catch (RuntimeException e) {
+                // undo the shards that did insert, then the claims
+                byShard.forEach((shard, claimed) ->
+                        shards.get(shard).deleteCustomersByIds(claimed.stream().map(Customer::getId).toList()));
+                releaseEmails(ids.values());
+                throw e;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean existsCustomerWithEmail(String email) {
+        var sql = """
+                SELECT EXISTS (
+                    SELECT 1
+                    FROM customer_email_directory
+                    WHERE email = ?
+                )
+                """;
+        return Boolean.TRUE.equals(directory.queryForObject(sql, Boolean.class, email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        var sql = """
+                SELECT email
+                FROM customer_email_directory
+                WHERE email = ANY (?)
+                """;
+        List<String> existing = directory.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")
+        );
+        return new HashSet<>(existing);
+    }
+
+    @Override
+    public void deleteCustomerById(Integer customerId) {
+        tracked(() -> {
+            CustomerShardMap map = shardMap;
+            if (map.movingFrom(customerId) != null) {
+                shards.get(map.movingFrom(customerId)).deleteCustomerById(customerId);
+            }
+            shards.get(map.owner(customerId)).deleteCustomerById(customerId);
+            return null;
+        });
+        releaseEmails(List.of(customerId));
+    }
+
+    @Override
+    public boolean existsCustomerWithId(Integer id) {
+        return tracked(() -> {
+            CustomerShardMap map = shardMap;
+            return map.movingFrom(id) != null && shards.get(map.movingFrom(id)).existsCustomerWithId(id)
+                    || shards.get(map.owner(id)).existsCustomerWithId(id);
+        });
+    }
+
+    @Override
+    public Set<Integer> selectExistingIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return tracked(() -> {
+            CustomerShardMap map = shardMap;
+            Map<String, List<Integer>> byShard = new LinkedHashMap<>();
+            for (Integer id : ids) {
+                byShard.computeIfAbsent(map.owner(id), shard -> new ArrayList<>()).add(id);
+                if (map.movingFrom(id) != null) {
+                    byShard.computeIfAbsent(map.movingFrom(id), shard -> new ArrayList<>()).add(id);
+                }
+            }
+            Set<Integer> existing = new HashSet<>();
+            join(byShard.entrySet().stream()
+                    .map(entry -> CompletableFuture.supplyAsync(DatabaseRoundTrips.propagate(
+                            () -> shards.get(entry.getKey()).selectExistingIds(entry.getValue())), executor))
+                    .toList())
+                    .forEach(existing::addAll);
+            return existing;
+        });
+    }
+
+    @Override
+    public CustomerUpdateOutcome updateCustomer(Customer update) {
+        boolean claimed = false;
+        if (update.getEmail() != null) {
+            try {
+                claimed = claimEmail(update.getId(), update.getEmail());
+            } catch (DuplicateKeyException e) {
+                return existsCustomerWithId(update.getId())
+                        ? CustomerUpdateOutcome.EMAIL_TAKEN
+                        : CustomerUpdateOutcome.NOT_FOUND;
+            }
+        }
+        CustomerUpdateOutcome outcome;
+        try {
+            outcome = tracked(() -> {
+                CustomerShardMap map = shardMap;
+                if (map.movingFrom(update.getId()) == null) {
+                    return shards.get(map.owner(update.getId())).updateCustomer(update);
+                }
+                // the row is on the old shard, the new one or, while being moved, both
+                CustomerUpdateOutcome source = shards.get(map.movingFrom(update.getId())).updateCustomer(update);
+                CustomerUpdateOutcome owner = shards.get(map.owner(update.getId())).updateCustomer(update);
+                return source == CustomerUpdateOutcome.NOT_FOUND ? owner : source;
+            });
+        } catch (RuntimeException e) {
+            if (claimed) {
+                releaseEmail(update.getId(), update.getEmail());
+            }
+            throw e;
+        }
+        if (outcome == CustomerUpdateOutcome.UPDATED && update.getEmail() != null) {
+            // the row has the new email now, the previous one is free
+            var sql = """
+                    DELETE
+                    FROM customer_email_directory
+                    WHERE customer_id = ? AND email <> ?
+                    """;
+            directory.update(sql, update.getId(), update.getEmail());
+        } else if (claimed) {
+            // the row kept its email, which holds its own claim
+            releaseEmail(update.getId(), update.getEmail());
+        }
+        return outcome;
+    }
+
+    /**
+     * Moves the rows of every moving bucket to its new shard, a page at a time, and settles the
+     * shard map once nothing is left to move. Each page is copied while its rows are locked on the
+     * old shard, replacing any copy an interrupted run left, and deleted from the old shard once the
+     * operations that were in flight during the copy are done. Safe to rerun after a failure.
+     *
+     * @return the number of customers moved
+     */
+    public long migrate() {
+        CustomerShardMap map = shardMap;
+        if (!map.isMoving()) {
+            return 0;
+        }
+        long moved = 0;
+        for (Map.Entry<String, CustomerJDBCDataAccessService> source : shards.entrySet()) {
+            int afterId = 0;
+            while (true) {
+                List<Customer> page = source.getValue().selectCustomerPage(afterId, PAGE_SIZE);
+                Map<String, List<Integer>> byTarget = new LinkedHashMap<>();
+                for (Customer customer : page) {
+                    if (source.getKey().equals(map.movingFrom(customer.getId()))) {
+                        byTarget.computeIfAbsent(map.owner(customer.getId()), shard -> new ArrayList<>())
+                                .add(customer.getId());
+                    }
+                }
+                for (Map.Entry<String, List<Integer>> target : byTarget.entrySet()) {
+                    moved += move(source.getValue(), shards.get(target.getKey()), target.getValue());
+                }
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+        }
+        synchronized (shardMapSwitch) {
+            if (shardMap == map) {
+                shardMap = map.settled();
+            }
+        }
+        return moved;
+    }
+
+    private int move(CustomerJDBCDataAccessService source, CustomerJDBCDataAccessService target, List<Integer> ids) {
+        // writes go to the old shard first, so they wait for the lock and then find the copy
+        List<Customer> copied = new ArrayList<>();
+        source.lockCustomers(ids, customers -> {
+            if (!customers.isEmpty()) {
+                target.upsertCustomersWithIds(customers);
+            }
+            copied.addAll(customers);
+        });
+        if (copied.isEmpty()) {
+            return 0;
+        }
+        // a read across the shards that started before the copy may have missed it on the new shard
+        awaitInFlight();
+        source.deleteCustomersByIds(copied.stream().map(Customer::getId).toList());
+        return copied.size();
+    }
+
+    public void migrateInBackground() {
+        executor.execute(() -> {
+            try {
+                log.info("Moved {} customers to their new shards", migrate());
+            } catch (RuntimeException e) {
+                log.error("Resharding stopped, rerun the migration to finish it", e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        for (DataSource dataSource : dataSources.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private void insertClaimed(Integer id, Customer customer) {
+        Customer claimed = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge());
+        try {
+            tracked(() -> {
+                shards.get(shardMap.owner(id)).insertCustomersWithIds(List.of(claimed));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            releaseEmails(List.of(id));
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether the claim is new, false when the customer already owns the email
+     */
+    private boolean claimEmail(Integer customerId, String email) {
+        // xmax is 0 on a row the INSERT added, set on one the DO UPDATE touched
+        var sql = """
+                INSERT INTO customer_email_directory (email, customer_id)
+                VALUES (?, ?)
+                ON CONFLICT (email) DO UPDATE
+                SET customer_id = excluded.customer_id
+                WHERE customer_email_directory.customer_id = excluded.customer_id
+                RETURNING xmax = 0 AS inserted
+                """;
+        List<Boolean> claim = directory.query(sql, (rs, rowNum) -> rs.getBoolean("inserted"), email, customerId);
+        if (claim.isEmpty()) {
+            throw new DuplicateKeyException("email already taken");
+        }
+        return claim.get(0);
+    }
+
+    private void releaseEmail(Integer customerId, String email) {
+        var sql = """
+                DELETE
+                FROM customer_email_directory
+                WHERE customer_id = ? AND email = ?
+                """;
+        directory.update(sql, customerId, email);
+    }
+
+    private void releaseEmails(Collection<Integer> customerIds) {
+        var sql = """
+                DELETE
+                FROM customer_email_directory
+                WHERE customer_id = ANY (?)
+                """;
+        directory.update(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("int4", customerIds.toArray())));
+    }
+
+    /**
+     * Runs an operation the migration waits for, see {@link #awaitInFlight()}. The shard map must be
+     * read inside it.
+     */
+    private <T> T tracked(Supplier<T> action) {
+        CompletableFuture<Void> operation = new CompletableFuture<>();
+        inFlight.add(operation);
+        try {
+            return action.get();
+        } finally {
+            inFlight.remove(operation);
+            operation.complete(null);
+        }
+    }
+
+    /**
+     * Waits for the operations in flight when called, not for those starting meanwhile.
+     */
+    private void awaitInFlight() {
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+    }
+
+    // the shard queries count toward the caller's DatabaseRoundTrips scope, like the ones it runs itself
+    private <T> List<T> scatter(Function<CustomerJDBCDataAccessService, T> query) {
+        return join(shards.values().stream()
+                .map(shard -> CompletableFuture.supplyAsync(
+                        DatabaseRoundTrips.propagate(() -> query.apply(shard)), executor))
+                .toList());
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * K-way merge of id-ordered lists, one per shard in shard order, keeping the first
+     * {@code limit} customers. A customer on two shards is being moved or was copied by an
+     * interrupted migration; the row on the shard it is moving from is current and kept.
+     */
+    private List<Customer> merge(CustomerShardMap map, List<List<Customer>> sortedLists, int limit) {
+        PriorityQueue<Run> runs = new PriorityQueue<>(Comparator.comparingInt(Run::headId)
+                .thenComparing(run -> !run.shard.equals(map.movingFrom(run.headId()))));
+        int total = 0;
+        int shard = 0;
+        for (String name : shards.keySet()) {
+            List<Customer> customers = sortedLists.get(shard++);
+            if (!customers.isEmpty()) {
+                runs.add(new Run(name, customers));
+                total += customers.size();
+            }
+        }
+        List<Customer> merged = new ArrayList<>(Math.min(total, limit));
+        int lastId = Integer.MIN_VALUE;
+        while (!runs.isEmpty() && merged.size() < limit) {
+            Run run = runs.poll();
+            Customer customer = run.customers.get(run.position++);
+            if (customer.getId() != lastId) {
+                merged.add(customer);
+                lastId = customer.getId();
+            }
+            if (run.position < run.customers.size()) {
+                runs.add(run);
+            }
+        }
+        return merged;
+    }
+
+    private static final class Run {
+        private final String shard;
+        private final List<Customer> customers;
+        private int position;
+
+        private Run(String shard, List<Customer> customers) {
+            this.shard = shard;
+            this.customers = customers;
+        }
+
+        private int headId() {
+            return customers.get(position).getId();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.allancode.datasource;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+@Configuration
+public class DataSourcePoolConfig {
+
+    /**
+     * Static and bound by hand: post processors are created before configuration properties
+     * binding is available to regular beans.
+     */
+    @Bean
+    public static HikariPoolSizingPostProcessor hikariPoolSizingPostProcessor(Environment environment) {
+        DataSourcePoolProperties properties = Binder.get(environment)
+                .bindOrCreate("customer.datasource.pool", DataSourcePoolProperties.class);
+        return new HikariPoolSizingPostProcessor(environment, properties,
+                Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,25 @@
+package com.allancode.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Inputs for sizing the JDBC pool when spring.datasource.hikari.maximum-pool-size is not set.
+ *
+ * @param effectiveSpindleCount disks the database can keep busy concurrently, 0 when the working set is cached
+ * @param expectedConcurrency   most requests expected to need a connection at once, 0 for no cap
+ */
+@ConfigurationProperties(prefix = "customer.datasource.pool")
+public record DataSourcePoolProperties(
+        @DefaultValue("1") int effectiveSpindleCount,
+        @DefaultValue("0") int expectedConcurrency
+) {
+    /**
+     * (cores * 2) + effective spindles, the starting point HikariCP recommends, capped by the
+     * expected concurrency since connections nobody waits for only cost the database memory.
+     */
+    public int poolSize(int availableProcessors) {
+        int size = availableProcessors * 2 + effectiveSpindleCount;
+        return expectedConcurrency > 0 ? Math.min(size, expectedConcurrency) : size;
+    }
+}
@@ -0,0 +1,29 @@
+package com.allancode.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Replicas for read-only transactions. Username and password default to spring.datasource's.
+ *
+ * @param readYourWritesWindow how long after a write the client's reads stay on the primary, 0 to
+ *                             only pin the rest of the writing request
+ */
+@ConfigurationProperties(prefix = "customer.datasource.routing")
+public record DataSourceRoutingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<Replica> replicas,
+        @DefaultValue("5s") Duration healthCheckInterval,
+        @DefaultValue("true") boolean readYourWrites,
+        @DefaultValue("5s") Duration readYourWritesWindow
+) {
+    public record Replica(
+            String url,
+            String username,
+            String password
+    ) {
+    }
+}
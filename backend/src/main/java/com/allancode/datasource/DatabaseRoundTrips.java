@@ -0,0 +1,136 @@
+package com.allancode.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread record of the statements sent through a {@link StatementCountingDataSource}, so each
+ * request can report how many round trips and how much database time it cost. Outside a scope
+ * opened with {@link #begin} or {@link #measure} nothing is recorded, so work handed to another
+ * thread has to carry the scope along with {@link #propagate}.
+ */
+public final class DatabaseRoundTrips {
+    // statements past this many are counted and timed but their SQL is not kept
+    static final int MAX_RECORDED_STATEMENTS = 100;
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private DatabaseRoundTrips() {
+    }
+
+    public static void begin() {
+        SCOPE.set(new Scope(null));
+    }
+
+    /**
+     * @return what was sent since {@link #begin}
+     */
+    public static Usage end() {
+        Scope scope = SCOPE.get();
+        SCOPE.remove();
+        return scope == null ? Usage.NONE : scope.usage();
+    }
+
+    /**
+     * Runs the work in its own scope and returns what it sent, for tests that pin the round trips
+     * of a code path, see {@link Usage#requireAtMost}. An enclosing scope still sees the statements.
+     */
+    public static Usage measure(Runnable work) {
+        Scope outer = SCOPE.get();
+        Scope scope = new Scope(outer);
+        SCOPE.set(scope);
+        try {
+            work.run();
+            return scope.usage();
+        } finally {
+            if (outer == null) {
+                SCOPE.remove();
+            } else {
+                SCOPE.set(outer);
+            }
+        }
+    }
+
+    /**
+     * Wraps work to run on another thread, such as a shard query, so that its statements are recorded
+     * in the scopes open on the calling thread. Without one the work is returned as is.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> work) {
+        Scope scope = SCOPE.get();
+        if (scope == null) {
+            return work;
+        }
+        return () -> {
+            Scope previous = SCOPE.get();
+            SCOPE.set(scope);
+            try {
+                return work.get();
+            } finally {
+                if (previous == null) {
+                    SCOPE.remove();
+                } else {
+                    SCOPE.set(previous);
+                }
+            }
+        };
+    }
+
+    static boolean active() {
+        return SCOPE.get() != null;
+    }
+
+    static void record(String sql, long nanos) {
+        for (Scope scope = SCOPE.get(); scope != null; scope = scope.outer) {
+            scope.record(sql, nanos);
+        }
+    }
+
+    /**
+     * @param sql the first {@link #MAX_RECORDED_STATEMENTS} statements in the order they ran
+     */
+    public record Usage(int statements, long nanos, List<String> sql) {
+        static final Usage NONE = new Usage(0, 0, List.of());
+
+        public Duration time() {
+            return Duration.ofNanos(nanos);
+        }
+
+        /**
+         * @throws StatementBudgetExceededException listing the statements when more than
+         *                                          {@code statements} ran
+         */
+        public Usage requireAtMost(int statements) {
+            if (this.statements > statements) {
+                throw new StatementBudgetExceededException(
+                        "%d statements, budget %d: %s".formatted(this.statements, statements, sql));
+            }
+            return this;
+        }
+    }
+
+    // shared by the threads a request fans out to, see propagate
+    private static final class Scope {
+        private final Scope outer;
+        private final List<String> sql = new ArrayList<>();
+        private int statements;
+        private long nanos;
+
+        private Scope(Scope outer) {
+            this.outer = outer;
+        }
+
+        private synchronized void record(String sql, long nanos) {
+            statements++;
+            this.nanos += nanos;
+            if (this.sql.size() < MAX_RECORDED_STATEMENTS) {
+                this.sql.add(sql);
+            }
+        }
+
+        private synchronized Usage usage() {
+            return new Usage(statements, nanos, Collections.unmodifiableList(new ArrayList<>(sql)));
+        }
+    }
+}
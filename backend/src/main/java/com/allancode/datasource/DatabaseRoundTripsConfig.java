@@ -0,0 +1,59 @@
+package com.allancode.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Counts the statements of every request on the application DataSource and checks them against
+ * {@link StatementBudgetProperties}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "customer.datasource.statements", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(StatementBudgetProperties.class)
+public class DatabaseRoundTripsConfig {
+    static final String DATA_SOURCE_BEAN = "dataSource";
+
+    /**
+     * Wraps the DataSource the application uses, Boot's or the routing one, so the pools behind
+     * routing are not counted twice. Under the routing config's lazy proxy it wraps the target, so a
+     * transaction that never needed a connection does not count its commit. Not
+     * {@link org.springframework.core.Ordered}, so it runs after {@link HikariPoolSizingPostProcessor}
+     * has seen the pool.
+     */
+    @Bean
+    public static BeanPostProcessor statementCountingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!DATA_SOURCE_BEAN.equals(beanName) || bean instanceof StatementCountingDataSource) {
+                    return bean;
+                }
+                if (bean instanceof LazyConnectionDataSourceProxy lazy) {
+                    if (!(lazy.getTargetDataSource() instanceof StatementCountingDataSource)) {
+                        lazy.setTargetDataSource(new StatementCountingDataSource(lazy.getTargetDataSource()));
+                    }
+                    return lazy;
+                }
+                if (bean instanceof DataSource dataSource) {
+                    return new StatementCountingDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public DatabaseRoundTripsFilter databaseRoundTripsFilter(MeterRegistry meterRegistry,
+                                                             StatementBudgetProperties properties) {
+        return new DatabaseRoundTripsFilter(meterRegistry, properties);
+    }
+}
@@ -0,0 +1,119 @@
+package com.allancode.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Opens a {@link DatabaseRoundTrips} scope per request and records what the request sent through the
+ * {@link StatementCountingDataSource} as customer.db.round.trips and customer.db.time, tagged like
+ * http.server.requests with the method and the matched uri pattern. A request over its
+ * {@link StatementBudgetProperties.Budget} is logged with its statements and counted in
+ * customer.db.budget.violations. The meters are built once per route, the uri being the pattern
+ * keeps the routes few.
+ */
+public class DatabaseRoundTripsFilter extends OncePerRequestFilter {
+    static final String ROUND_TRIPS_NAME = "customer.db.round.trips";
+    static final String TIME_NAME = "customer.db.time";
+    static final String VIOLATIONS_NAME = "customer.db.budget.violations";
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Logger log = LoggerFactory.getLogger(DatabaseRoundTripsFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final StatementBudgetProperties properties;
+    private final Map<Route, RouteMeters> meters = new ConcurrentHashMap<>();
+
+    public DatabaseRoundTripsFilter(MeterRegistry meterRegistry, StatementBudgetProperties properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        DatabaseRoundTrips.begin();
+        DatabaseRoundTrips.Usage usage;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            usage = DatabaseRoundTrips.end();
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        RouteMeters routeMeters = meters.computeIfAbsent(new Route(request.getMethod(), uri), this::register);
+        routeMeters.roundTrips.record(usage.statements());
+        routeMeters.time.record(usage.nanos(), TimeUnit.NANOSECONDS);
+
+        StatementBudgetProperties.Budget budget = properties.budget(request.getMethod(), uri);
+        if (budget.exceededBy(usage)) {
+            routeMeters.violations(meterRegistry).increment();
+            String message = "%s %s sent %d statements in %.1f ms, budget %s: %s".formatted(
+                    request.getMethod(), uri, usage.statements(), usage.nanos() / 1e6, budget,
+                    // one line per request, the text block statements span several
+                    usage.sql().stream().map(sql -> WHITESPACE.matcher(sql.strip()).replaceAll(" ")).toList());
+            if (properties.failOnViolation()) {
+                throw new StatementBudgetExceededException(message);
+            }
+            log.warn(message);
+        }
+    }
+
+    private RouteMeters register(Route route) {
+        Tags tags = Tags.of("method", route.method(), "uri", route.uri());
+        DistributionSummary roundTrips = DistributionSummary.builder(ROUND_TRIPS_NAME)
+                .description("Statements, commits and rollbacks sent to the database per request")
+                .tags(tags)
+                .register(meterRegistry);
+        Timer time = Timer.builder(TIME_NAME)
+                .description("Time per request spent waiting on the database")
+                .tags(tags)
+                .register(meterRegistry);
+        return new RouteMeters(roundTrips, time, Counter.builder(VIOLATIONS_NAME)
+                .description("Requests that went over their statement or database time budget")
+                .tags(tags));
+    }
+
+    private record Route(String method, String uri) {
+    }
+
+    private static final class RouteMeters {
+        private final DistributionSummary roundTrips;
+        private final Timer time;
+        private final Counter.Builder violationsBuilder;
+        // registered on the first violation, so routes within budget don't report a zero count
+        private volatile Counter violations;
+
+        private RouteMeters(DistributionSummary roundTrips, Timer time, Counter.Builder violationsBuilder) {
+            this.roundTrips = roundTrips;
+            this.time = time;
+            this.violationsBuilder = violationsBuilder;
+        }
+
+        private Counter violations(MeterRegistry meterRegistry) {
+            Counter counter = violations;
+            if (counter == null) {
+                // the registry hands out the same counter if two requests race here
+                counter = violationsBuilder.register(meterRegistry);
+                violations = counter;
+            }
+            return counter;
+        }
+    }
+}
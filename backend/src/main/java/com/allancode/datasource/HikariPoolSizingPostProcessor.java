@@ -0,0 +1,43 @@
+package com.allancode.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+/**
+ * Sizes every {@link HikariDataSource} from {@link DataSourcePoolProperties} before its pool starts,
+ * unless the size was configured explicitly. The pool is fixed size (minimum idle equals maximum),
+ * so a burst never waits for connections to be opened.
+ */
+public class HikariPoolSizingPostProcessor implements BeanPostProcessor, Ordered {
+    static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+    private final Environment environment;
+    private final DataSourcePoolProperties properties;
+    private final int availableProcessors;
+
+    public HikariPoolSizingPostProcessor(Environment environment,
+                                         DataSourcePoolProperties properties,
+                                         int availableProcessors) {
+        this.environment = environment;
+        this.properties = properties;
+        this.availableProcessors = availableProcessors;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource && !environment.containsProperty(MAXIMUM_POOL_SIZE)) {
+            int size = properties.poolSize(availableProcessors);
+            dataSource.setMaximumPoolSize(size);
+            dataSource.setMinimumIdle(size);
+        }
+        return bean;
+    }
+
+    // after the binding of spring.datasource.hikari, which also runs as a post processor
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,52 @@
+package com.allancode.datasource;
+
+/**
+ * Per-thread read-your-writes state for {@link ReplicaRoutingDataSource}. Inside a scope opened with
+ * {@link #begin}, read-only work goes to the primary once the scope has written, or from the start
+ * when the scope is pinned because the client wrote recently. Outside a scope reads always go to
+ * replicas.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * @param pinnedToPrimary route reads to the primary for the whole scope
+     * @param onFirstWrite    run once when the scope first uses the primary for writing, may be null
+     */
+    public static void begin(boolean pinnedToPrimary, Runnable onFirstWrite) {
+        SCOPE.set(new Scope(pinnedToPrimary, onFirstWrite));
+    }
+
+    public static void end() {
+        SCOPE.remove();
+    }
+
+    static boolean pinnedToPrimary() {
+        Scope scope = SCOPE.get();
+        return scope != null && (scope.pinnedToPrimary || scope.written);
+    }
+
+    static void markWrite() {
+        Scope scope = SCOPE.get();
+        if (scope != null && !scope.written) {
+            scope.written = true;
+            if (scope.onFirstWrite != null) {
+                scope.onFirstWrite.run();
+            }
+        }
+    }
+
+    private static final class Scope {
+        private final boolean pinnedToPrimary;
+        private final Runnable onFirstWrite;
+        private boolean written;
+
+        private Scope(boolean pinnedToPrimary, Runnable onFirstWrite) {
+            this.pinnedToPrimary = pinnedToPrimary;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.allancode.datasource;
+
+/**
+ * A request or a measured block sent more statements, or spent longer in the database, than its
+ * budget allows.
+ */
+public class StatementBudgetExceededException extends IllegalStateException {
+    public StatementBudgetExceededException(String message) {
+        super(message);
+    }
+}
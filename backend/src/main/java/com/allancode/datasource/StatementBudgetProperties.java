@@ -0,0 +1,49 @@
+package com.allancode.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Statement counting on the application DataSource and the per-request budgets it is checked
+ * against.
+ *
+ * @param failOnViolation throw {@link StatementBudgetExceededException} from the request instead of
+ *                        only logging, for tests
+ * @param budgets         keyed by method and uri pattern as in http.server.requests, for example
+ *                        "GET /api/v1/customers/{customerId}"
+ * @param defaultBudget   for requests without an entry in budgets
+ */
+@ConfigurationProperties(prefix = "customer.datasource.statements")
+public record StatementBudgetProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("false") boolean failOnViolation,
+        @DefaultValue Map<String, Budget> budgets,
+        @DefaultValue Budget defaultBudget
+) {
+    /**
+     * @param statements at most this many statements, commits and rollbacks, 0 for no limit
+     * @param time       at most this much time waiting on the database, null for no limit
+     */
+    public record Budget(
+            @DefaultValue("0") int statements,
+            Duration time
+    ) {
+        boolean exceededBy(DatabaseRoundTrips.Usage usage) {
+            return (statements > 0 && usage.statements() > statements)
+                    || (time != null && usage.nanos() > time.toNanos());
+        }
+
+        @Override
+        public String toString() {
+            return (statements > 0 ? statements + " statements" : "any statements")
+                    + ", " + (time != null ? time.toMillis() + " ms" : "any time");
+        }
+    }
+
+    Budget budget(String method, String uri) {
+        return budgets.getOrDefault(method + " " + uri, defaultBudget);
+    }
+}
@@ -0,0 +1,132 @@
+package com.allancode.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Records every statement execution, commit and rollback in the calling thread's
+ * {@link DatabaseRoundTrips} scope, with its SQL and the time until the driver returned. Connections
+ * taken outside a scope, by Flyway at startup for instance, are handed out unwrapped.
+ * <p>
+ * Rows a cursor fetches while the result set is read are not counted as further round trips.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    public StatementCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    /**
+     * Closes the pool behind, this replaces it as the bean Spring closes on shutdown.
+     */
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Connection counting(Connection connection) {
+        if (!DatabaseRoundTrips.active()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                // transaction synchronization compares connections, keep the proxy's identity
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "commit":
+                case "rollback":
+                    if (args == null) {
+                        return timed(target, method, null, method.getName().toUpperCase());
+                    }
+                    break;
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    Statement statement = (Statement) StatementCountingDataSource.invoke(target, method, args);
+                    String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                    return Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+                            new Class<?>[]{statementType(statement)}, new StatementHandler(statement, sql));
+                default:
+            }
+            return StatementCountingDataSource.invoke(target, method, args);
+        }
+
+        private static Class<?> statementType(Statement statement) {
+            if (statement instanceof CallableStatement) {
+                return CallableStatement.class;
+            }
+            return statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        }
+    }
+
+    /**
+     * @param sql the prepared SQL, null for plain statements which pass it to execute
+     */
+    private record StatementHandler(Statement target, String sql) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+            }
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+                return timed(target, method, args, executed != null ? executed : "batch");
+            }
+            return StatementCountingDataSource.invoke(target, method, args);
+        }
+    }
+
+    private static Object timed(Object target, Method method, Object[] args, String sql) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invoke(target, method, args);
+        } finally {
+            DatabaseRoundTrips.record(sql, System.nanoTime() - start);
+        }
+    }
+}
@@ -4,9 +4,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.CONFLICT)
-public class DuplicateResourceException extends RuntimeException{
-    public DuplicateResourceException(String message){
-        super(message);
-
+public class DuplicateResourceException extends ProblemException {
+    public DuplicateResourceException(String message) {
+        super(HttpStatus.CONFLICT, message);
     }
 }
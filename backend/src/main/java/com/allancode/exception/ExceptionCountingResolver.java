@@ -0,0 +1,53 @@
+package com.allancode.exception;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import java.util.Map;
+
+/**
+ * Counts the domain exceptions that reach the dispatcher as customer.exceptions, tagged with the
+ * exception, then leaves the response to the resolvers after it.
+ */
+public class ExceptionCountingResolver implements HandlerExceptionResolver, Ordered {
+    static final String COUNTER_NAME = "customer.exceptions";
+
+    private final Map<Class<?>, Counter> counters;
+
+    public ExceptionCountingResolver(MeterRegistry meterRegistry) {
+        this.counters = Map.of(
+                ResourceNotFoundException.class, counter(meterRegistry, ResourceNotFoundException.class),
+                DuplicateResourceException.class, counter(meterRegistry, DuplicateResourceException.class),
+                RequestValidationException.class, counter(meterRegistry, RequestValidationException.class)
+        );
+    }
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request,
+                                         HttpServletResponse response,
+                                         Object handler,
+                                         Exception ex) {
+        Counter counter = counters.get(ex.getClass());
+        if (counter != null) {
+            counter.increment();
+        }
+        return null;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, Class<? extends RuntimeException> exception) {
+        return Counter.builder(COUNTER_NAME)
+                .description("Domain exceptions thrown while handling requests")
+                .tag("exception", exception.getSimpleName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,57 @@
+package com.allancode.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An expected business outcome rather than a fault: no stack trace is captured and suppression is
+ * off, and its RFC 9457 problem+json body is rendered once when it is created. Instances carry no
+ * request state, so a fixed one can be created once and thrown over and over.
+ */
+public abstract class ProblemException extends RuntimeException {
+    private final HttpStatus status;
+    private final byte[] problem;
+
+    protected ProblemException(HttpStatus status, String message) {
+        super(message, null, false, false);
+        this.status = status;
+        this.problem = """
+                {"type":"about:blank","title":"%s","status":%d,"detail":"%s"}"""
+                .formatted(status.getReasonPhrase(), status.value(), escape(message))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public HttpStatus status() {
+        return status;
+    }
+
+    /**
+     * The response body, shared between throws, callers must not modify it.
+     */
+    public byte[] problem() {
+        return problem;
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append("\\u%04x".formatted((int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
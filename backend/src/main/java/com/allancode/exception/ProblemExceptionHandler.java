@@ -0,0 +1,22 @@
+package com.allancode.exception;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers {@link ProblemException}s with their prebuilt problem+json body straight from the handler
+ * dispatch, where @ResponseStatus alone would forward the request to the /error page and build a map
+ * of error attributes for every miss.
+ */
+@RestControllerAdvice
+public class ProblemExceptionHandler {
+
+    @ExceptionHandler(ProblemException.class)
+    public ResponseEntity<byte[]> handleProblem(ProblemException e) {
+        return ResponseEntity.status(e.status())
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .body(e.problem());
+    }
+}
@@ -4,8 +4,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class RequestValidationException extends RuntimeException{
+public class RequestValidationException extends ProblemException {
     public RequestValidationException(String message) {
-        super(message);
+        super(HttpStatus.BAD_REQUEST, message);
     }
 }
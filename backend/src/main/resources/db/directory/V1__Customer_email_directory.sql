@@ -0,0 +1,10 @@
+-- Global email uniqueness for the sharded backend: each shard only enforces its own UNIQUE(email).
+-- Only ShardedCustomerDAO maintains it and migrates it, see CustomerDAOConfig, and it fills in the
+-- claims of rows already on the shards when it starts. IF NOT EXISTS for databases that got the
+-- table when it was still part of spring.flyway's migrations.
+CREATE TABLE IF NOT EXISTS customer_email_directory(
+    email TEXT PRIMARY KEY,
+    customer_id INT NOT NULL
+    );
+
+CREATE INDEX IF NOT EXISTS customer_email_directory_customer_id_idx ON customer_email_directory (customer_id);
@@ -0,0 +1,8 @@
+-- Customer's pooled id generator reserves 50 ids per nextval from a sequence of its own, so writers
+-- going through the column default keep taking consecutive ids. The two sequences share the id
+-- column in ranges kept apart: customer_id_seq, the default the JDBC, R2DBC and sharded backends use,
+-- hands out ids below 1000000000 and fails past them, customer_jpa_id_seq hands out blocks of 50
+-- from there.
+ALTER SEQUENCE customer_id_seq MAXVALUE 999999999;
+
+CREATE SEQUENCE customer_jpa_id_seq INCREMENT BY 50 START WITH 1000000000 MAXVALUE 2147483647;
@@ -1,9 +1,11 @@
 package com.allancode;
 
 import com.github.javafaker.Faker;
+import io.r2dbc.spi.ConnectionFactory;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeAll;
 import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -66,6 +68,16 @@ public abstract class AbstractTestContainersUnitTest {
         return new JdbcTemplate(getDataSource());
     }
 
+    protected static ConnectionFactory getConnectionFactory(){
+        return ConnectionFactoryBuilder.withUrl("r2dbc:postgresql://%s:%d/%s".formatted(
+                        postgreSQLContainer.getHost(),
+                        postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT),
+                        postgreSQLContainer.getDatabaseName()))
+                .username(postgreSQLContainer.getUsername())
+                .password(postgreSQLContainer.getPassword())
+                .build();
+    }
+
     protected static final Faker FAKER = new Faker();
 
 
@@ -0,0 +1,164 @@
+package com.allancode.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingCustomerDAOTest {
+    private CachingCustomerDAO underTest;
+    private AutoCloseable autoCloseable;
+    @Mock
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        underTest = new CachingCustomerDAO(customerDAO, 100, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void itShouldServeRepeatedReadsFromCache() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19);
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(customer));
+
+        //When
+        Optional<Customer> first = underTest.selectCustomerById(1);
+        Optional<Customer> second = underTest.selectCustomerById(1);
+
+        //Then
+        assertThat(first).hasValue(customer);
+        assertThat(second).hasValue(customer);
+        verify(customerDAO, times(1)).selectCustomerById(1);
+        assertThat(underTest.cache().synchronous().stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldNotCacheMissingCustomers() {
+        //Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(1);
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        //Then
+        assertThat(actual).isEmpty();
+        verify(customerDAO, times(2)).selectCustomerById(1);
+    }
+
+    @Test
+    void itShouldHandOutCopiesOfCachedCustomers() {
+        //Given
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 19)));
+
+        //When
+        underTest.selectCustomerById(1).orElseThrow().setName("Jamila");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void itShouldInvalidateOnUpdate() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 19);
+        Customer updated = new Customer(1, "Jamila", "alex@gmail.com", 19);
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.of(customer))
+                .thenReturn(Optional.of(updated));
+        when(customerDAO.updateCustomer(updated)).thenReturn(CustomerUpdateOutcome.UPDATED);
+        underTest.selectCustomerById(1);
+
+        //When
+        underTest.updateCustomer(updated);
+
+        //Then
+        assertThat(underTest.selectCustomerById(1)).hasValue(updated);
+        verify(customerDAO).updateCustomer(updated);
+    }
+
+    @Test
+    void itShouldInvalidateOnDelete() {
+        //Given
+        when(customerDAO.selectCustomerById(1))
+                .thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 19)))
+                .thenReturn(Optional.empty());
+        underTest.selectCustomerById(1);
+
+        //When
+        underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+        verify(customerDAO).deleteCustomerById(1);
+    }
+
+    @Test
+    void itShouldPropagateLoadFailuresWithoutCachingThem() {
+        //Given
+        when(customerDAO.selectCustomerById(1))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 19)));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.selectCustomerById(1))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("db down");
+        assertThat(underTest.selectCustomerById(1)).isPresent();
+    }
+
+    @Test
+    void itShouldCoalesceConcurrentMissesOnSameId() throws Exception {
+        //Given
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(customerDAO.selectCustomerById(1)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 19));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            //When
+            Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+            loading.await(5, TimeUnit.SECONDS);
+            Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(1));
+            Thread.sleep(50);
+            release.countDown();
+
+            //Then
+            assertThat(first.get(5, TimeUnit.SECONDS)).isPresent();
+            assertThat(second.get(5, TimeUnit.SECONDS)).isPresent();
+            Mockito.verify(customerDAO, times(1)).selectCustomerById(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
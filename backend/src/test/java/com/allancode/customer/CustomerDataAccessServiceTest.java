@@ -0,0 +1,186 @@
+package com.allancode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerDataAccessServiceTest {
+    private CustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerDataAccessService();
+    }
+
+    @Test
+    void itShouldSelectSeededCustomersInIdOrder() {
+        //When
+        List<Customer> customers = underTest.selectAllCustomers();
+
+        //Then
+        assertThat(customers).extracting(Customer::getId).containsExactly(1, 2);
+    }
+
+    @Test
+    void itShouldAssignIdsAndIndexEmailOnInsert() {
+        //Given
+        Customer customer = new Customer("Eve", "eve@gmail.com", 30);
+
+        //When
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(customer);
+
+        //Then
+        assertThat(id).hasValue(3);
+        assertThat(underTest.existsCustomerWithEmail("eve@gmail.com")).isTrue();
+        assertThat(underTest.existsCustomerWithId(3)).isTrue();
+        assertThat(underTest.selectCustomerById(3)).hasValue(new Customer(3, "Eve", "eve@gmail.com", 30));
+    }
+
+    @Test
+    void itShouldRejectDuplicateEmails() {
+        //When
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 30));
+
+        //Then
+        assertThat(id).isEmpty();
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void itShouldReplaceCustomerOnUpdate() {
+        //Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexander@gmail.com");
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.UPDATED);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValue(new Customer(1, "Alex", "alexander@gmail.com", 21));
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alexander@gmail.com")).isTrue();
+    }
+
+    @Test
+    void itShouldRejectUpdateToTakenEmail() {
+        //Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("jamila@gmail.com");
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+    @Test
+    void itShouldReportUnchangedAndMissingCustomersOnUpdate() {
+        //When
+        CustomerUpdateOutcome unchanged = underTest.updateCustomer(new Customer(1, "Alex", "alex@gmail.com", null));
+        CustomerUpdateOutcome missing = underTest.updateCustomer(new Customer(1000, "Alex", null, null));
+
+        //Then
+        assertThat(unchanged).isEqualTo(CustomerUpdateOutcome.UNCHANGED);
+        assertThat(missing).isEqualTo(CustomerUpdateOutcome.NOT_FOUND);
+    }
+
+    @Test
+    void itShouldNotExposeStoredInstances() {
+        //When
+        underTest.selectCustomerById(1).orElseThrow().setName("Changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getName()).isEqualTo("Alex"));
+    }
+
+    @Test
+    void itShouldDeleteCustomerAndReleaseEmail() {
+        //When
+        underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(underTest.existsCustomerWithId(1)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(2);
+    }
+
+    @Test
+    void itShouldInsertCustomersWithFreeEmailsAndSkipTakenOnes() {
+        //When
+        Set<String> inserted = underTest.insertCustomersIfEmailAbsent(List.of(
+                new Customer("Alex", "alex@gmail.com", 40),
+                new Customer("Eve", "eve@gmail.com", 30),
+                new Customer("Eve", "eve@gmail.com", 31)));
+
+        //Then
+        assertThat(inserted).containsExactly("eve@gmail.com");
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com", "eve@gmail.com");
+    }
+
+    @Test
+    void itShouldPageAfterId() {
+        //Given
+        IntStream.range(0, 5).forEach(i ->
+                underTest.insertCustomer(new Customer("Customer" + i, "customer" + i + "@gmail.com", 20)));
+
+        //When
+        List<Customer> page = underTest.selectCustomerPage(2, 3);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(3, 4, 5);
+        assertThat(underTest.selectExistingEmails(List.of("customer0@gmail.com", "nobody@gmail.com")))
+                .isEqualTo(Set.of("customer0@gmail.com"));
+        assertThat(underTest.selectExistingIds(List.of(1, 5, 1000))).isEqualTo(Set.of(1, 5));
+    }
+
+    @Test
+    void itShouldInsertConcurrentlyWithoutLosingCustomers() throws Exception {
+        //Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            //When
+            List<Future<Optional<Integer>>> results = IntStream.range(0, 2_000)
+                    .mapToObj(i -> executor.submit(() -> underTest.insertCustomerIfEmailAbsent(
+                            new Customer("Customer" + i, "customer" + (i % 1_000) + "@gmail.com", 20))))
+                    .toList();
+            long inserted = 0;
+            for (Future<Optional<Integer>> result : results) {
+                if (result.get().isPresent()) {
+                    inserted++;
+                }
+            }
+
+            //Then
+            assertThat(inserted).isEqualTo(1_000);
+            assertThat(underTest.selectAllCustomers()).hasSize(1_002)
+                    .extracting(Customer::getId)
+                    .doesNotHaveDuplicates();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
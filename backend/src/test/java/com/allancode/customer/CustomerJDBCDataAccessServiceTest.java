@@ -1,12 +1,18 @@
 package com.allancode.customer;
 
 import com.allancode.AbstractTestContainersUnitTest;
+import com.allancode.datasource.DatabaseRoundTrips;
+import com.allancode.datasource.StatementCountingDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -44,6 +50,53 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainersUnitTest {
 
     }
 
+    @Test
+    void itShouldSelectCustomerPageOrderedAfterId() {
+        //Given
+        for (int i = 0; i < 3; i++) {
+            underTest.insertCustomer(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> firstPage = underTest.selectCustomerPage(0, 2);
+
+        //When
+        List<Customer> nextPage = underTest.selectCustomerPage(firstPage.get(1).getId(), 2);
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(firstPage).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        assertThat(nextPage).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(firstPage.get(1).getId()));
+
+    }
+
+    @Test
+    void itShouldStreamCustomersAfterId() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+        List<Customer> streamed = new ArrayList<>();
+
+        //When
+        underTest.streamCustomers(0, streamed::add);
+
+        //Then
+        assertThat(streamed).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        assertThat(streamed).extracting(Customer::getEmail).contains(email);
+        Integer id = streamed.stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        List<Customer> resumed = new ArrayList<>();
+        underTest.streamCustomers(id, resumed::add);
+        assertThat(resumed).allSatisfy(c -> assertThat(c.getId()).isGreaterThan(id));
+    }
+
     @Test
     void itShouldSelectCustomerById() {
         //Given
@@ -128,6 +181,116 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainersUnitTest {
 
     }
 
+    @Test
+    void itShouldInsertCustomerIfEmailAbsent() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(FAKER.name().fullName(), email, 20);
+
+        //When
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(customer);
+        Optional<Integer> duplicate = underTest.insertCustomerIfEmailAbsent(customer);
+
+        //Then
+        assertThat(id).isPresent();
+        assertThat(duplicate).isEmpty();
+        assertThat(underTest.selectCustomerById(id.get()))
+                .isPresent()
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo(email));
+    }
+
+    @Test
+    void itShouldInsertCustomersInBatch() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20),
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30)
+        );
+
+        //When
+        underTest.insertCustomers(customers);
+
+        //Then
+        assertThat(underTest.selectAllCustomers())
+                .extracting(Customer::getEmail)
+                .contains(customers.get(0).getEmail(), customers.get(1).getEmail());
+    }
+
+    @Test
+    void itShouldInsertCustomersWithFreeEmailsAndSkipTakenOnes() {
+        //Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), taken, 20));
+        Customer free = new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30);
+
+        //When
+        Set<String> inserted = underTest.insertCustomersIfEmailAbsent(List.of(
+                new Customer(FAKER.name().fullName(), taken, 40), free));
+
+        //Then
+        assertThat(inserted).containsExactly(free.getEmail());
+        assertThat(underTest.selectExistingEmails(List.of(taken, free.getEmail())))
+                .containsExactlyInAnyOrder(taken, free.getEmail());
+    }
+
+    @Test
+    void itShouldTimeStatementsAndCountRowsAndRoundTrips() {
+        //Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CustomerJDBCDataAccessService metered = new CustomerJDBCDataAccessService(
+                new JdbcTemplate(new StatementCountingDataSource(getJdbcTemplate().getDataSource())),
+                customerRowMapper, meterRegistry);
+        List<Customer> customers = List.of(
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20),
+                new Customer(FAKER.name().fullName(), FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 30)
+        );
+
+        //When
+        DatabaseRoundTrips.Usage usage = DatabaseRoundTrips.measure(() -> {
+            metered.insertCustomers(customers);
+            metered.selectCustomerById(-1);
+        });
+
+        //Then
+        assertThat(usage.statements()).isEqualTo(2);
+        assertThat(meterRegistry.get("customer.jdbc.statement").tag("statement", "insert_batch").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.jdbc.rows").tag("statement", "insert_batch").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("customer.jdbc.statement").tag("statement", "select_by_id").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("customer.jdbc.rows").tag("statement", "select_by_id").counter().count())
+                .isZero();
+    }
+
+    @Test
+    void itShouldSelectExistingEmails() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String missing = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer(FAKER.name().fullName(), email, 20));
+
+        //When
+        Set<String> existing = underTest.selectExistingEmails(List.of(email, missing));
+
+        //Then
+        assertThat(existing).containsExactly(email);
+    }
+
+    @Test
+    void itShouldSelectExistingIds() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20))
+                .orElseThrow();
+
+        //When
+        Set<Integer> existing = underTest.selectExistingIds(List.of(id, -1));
+
+        //Then
+        assertThat(existing).containsExactly(id);
+    }
+
     @Test
     void itShouldReturnFalseWhenExistsCustomerWithEmailNotExist() {
         //Given
@@ -316,6 +479,36 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainersUnitTest {
 
     }
 
+    @Test
+    void itShouldUpdateCustomerNameAndAgeTogether() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                email,
+                20);
+        underTest.insertCustomer(customer);
+        Integer id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        Customer update = new Customer();
+        update.setId(id);
+        update.setName("foo");
+        update.setAge(31);
+
+        underTest.updateCustomer(update);
+
+        //Then
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+        assertThat(actual).isPresent()
+                .hasValue(new Customer(id, "foo", email, 31));
+    }
+
     @Test
     void itShouldUpdateAllCustomerDetails() {
         //Given
@@ -347,4 +540,32 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainersUnitTest {
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isPresent().hasValue(update);
     }
+
+    @Test
+    void itShouldReportWhyCustomerWasNotUpdated() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertCustomer(new Customer("foo", email, 20));
+        underTest.insertCustomer(new Customer("bar", otherEmail, 20));
+        Integer id = underTest.selectAllCustomers()
+                .stream()
+                .filter(c -> c.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        CustomerUpdateOutcome unchanged = underTest.updateCustomer(new Customer(id, "foo", email, 20));
+        CustomerUpdateOutcome emailTaken = underTest.updateCustomer(new Customer(id, "baz", otherEmail, null));
+        CustomerUpdateOutcome missing = underTest.updateCustomer(new Customer(-1, "baz", null, null));
+        CustomerUpdateOutcome updated = underTest.updateCustomer(new Customer(id, "baz", email, null));
+
+        //Then
+        assertThat(unchanged).isEqualTo(CustomerUpdateOutcome.UNCHANGED);
+        assertThat(emailTaken).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(missing).isEqualTo(CustomerUpdateOutcome.NOT_FOUND);
+        assertThat(updated).isEqualTo(CustomerUpdateOutcome.UPDATED);
+        assertThat(underTest.selectCustomerById(id)).hasValue(new Customer(id, "baz", email, 20));
+    }
 }
\ No newline at end of file
@@ -1,11 +1,22 @@
 package com.allancode.customer;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class CustomerJPADataAccessServiceTest {
     private CustomerJPADataAccessService underTest;
@@ -31,7 +42,45 @@ class CustomerJPADataAccessServiceTest {
         underTest.selectAllCustomers();
         //Then
         Mockito.verify(customerRepository)
-                .findAll();
+                .findAllDetached();
+
+    }
+
+    @Test
+    void itShouldSelectCustomerPage() {
+        //Given
+        int afterId = 10;
+        int limit = 20;
+
+        //When
+        underTest.selectCustomerPage(afterId, limit);
+
+        //Then
+        Mockito.verify(customerRepository)
+                .findPageDetached(afterId, Limit.of(limit));
+
+    }
+
+    @Test
+    void itShouldStreamCustomersInKeysetChunks() {
+        //Given
+        List<Customer> firstChunk = IntStream.rangeClosed(1, 1000)
+                .mapToObj(i -> new Customer(i, "Ali", "ali" + i + "@gmail.com", 2))
+                .toList();
+        List<Customer> lastChunk = List.of(new Customer(1001, "Ali", "ali1001@gmail.com", 2));
+        Mockito.when(customerRepository.findPageDetached(0, Limit.of(1000)))
+                .thenReturn(firstChunk);
+        Mockito.when(customerRepository.findPageDetached(1000, Limit.of(1000)))
+                .thenReturn(lastChunk);
+        List<Customer> streamed = new ArrayList<>();
+
+        //When
+        underTest.streamCustomers(0, streamed::add);
+
+        //Then
+        assertThat(streamed).hasSize(1001);
+        Mockito.verify(customerRepository, Mockito.times(2))
+                .findPageDetached(Mockito.anyInt(), Mockito.any(Limit.class));
 
     }
 
@@ -63,6 +112,49 @@ class CustomerJPADataAccessServiceTest {
 
     }
 
+    @Test
+    void itShouldInsertCustomerIfEmailAbsent() {
+        //Given
+        Customer customer = new Customer("Ali", "ali@gmail.com", 2);
+
+        //When
+        underTest.insertCustomerIfEmailAbsent(customer);
+
+        //Then
+        Mockito.verify(customerRepository)
+                .insertIfEmailAbsent(customer.getName(), customer.getEmail(), customer.getAge());
+
+    }
+
+    @Test
+    void itShouldInsertCustomers() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer("Ali", "ali@gmail.com", 2),
+                new Customer("Eve", "eve@gmail.com", 3)
+        );
+
+        //When
+        underTest.insertCustomers(customers);
+
+        //Then
+        Mockito.verify(customerRepository).persistAllInBatches(customers);
+
+    }
+
+    @Test
+    void itShouldSelectExistingEmails() {
+        //Given
+        List<String> emails = List.of("foo@gmail.com", "bar@gmail.com");
+
+        //When
+        underTest.selectExistingEmails(emails);
+
+        //Then
+        Mockito.verify(customerRepository).findExistingEmails(emails.toArray(String[]::new));
+
+    }
+
     @Test
     void itShouldExistsCustomerWithEmail() {
         //Given
@@ -109,12 +201,47 @@ class CustomerJPADataAccessServiceTest {
                 1, "Ali", "ali@gmail.com", 2
         );
 
+        Mockito.when(customerRepository.updateIfChanged(1, "Ali", "ali@gmail.com", 2)).thenReturn("UPDATED");
+
         //When
-        underTest.updateCustomer(customer);
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(customer);
 
         //Then
-        Mockito.verify(customerRepository).save(customer);
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.UPDATED);
+        Mockito.verify(customerRepository, Mockito.never()).save(customer);
 
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void itShouldReportEmailClaimedByAnotherWriterAsTaken() {
+        //Given
+        Customer customer = new Customer(1, null, "ali@gmail.com", null);
+        Mockito.when(customerRepository.updateIfChanged(1, null, "ali@gmail.com", null))
+                .thenThrow(violationOf(CustomerJPADataAccessService.EMAIL_CONSTRAINT));
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(customer);
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+    }
+
+    @Test
+    void itShouldRethrowOtherConstraintViolations() {
+        //Given
+        Customer customer = new Customer(1, null, null, -1);
+        DataIntegrityViolationException violation = violationOf("customer_age_check");
+        Mockito.when(customerRepository.updateIfChanged(1, null, null, -1)).thenThrow(violation);
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.updateCustomer(customer)).isSameAs(violation);
+    }
+
+    private static DataIntegrityViolationException violationOf(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement",
+                        new SQLException("violates constraint " + constraint), constraint));
+    }
+}
@@ -0,0 +1,161 @@
+package com.allancode.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class CustomerOffHeapDataAccessServiceTest {
+    private CustomerOffHeapDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerOffHeapDataAccessService();
+        underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        underTest.insertCustomer(new Customer("Jamila", "jamila@gmail.com", null));
+    }
+
+    @Test
+    void itShouldAssignIdsAndReadRowsBack() {
+        //When
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(new Customer("Zoë", "zoë@gmail.com", 30));
+
+        //Then
+        assertThat(id).hasValue(3);
+        assertThat(underTest.selectAllCustomers()).containsExactly(
+                new Customer(1, "Alex", "alex@gmail.com", 21),
+                new Customer(2, "Jamila", "jamila@gmail.com", null),
+                new Customer(3, "Zoë", "zoë@gmail.com", 30)
+        );
+        assertThat(underTest.existsCustomerWithEmail("zoë@gmail.com")).isTrue();
+        assertThat(underTest.existsCustomerWithId(3)).isTrue();
+    }
+
+    @Test
+    void itShouldRejectDuplicateEmailsAndOutOfOrderIds() {
+        //When
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 30));
+
+        //Then
+        assertThat(id).isEmpty();
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("Alex", "alex@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer(1, "Other", "other@gmail.com", 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(2);
+    }
+
+    @Test
+    void itShouldStreamInBatchesWithoutHoldingTheLockInTheConsumer() {
+        //Given
+        int size = CustomerOffHeapDataAccessService.STREAM_BATCH_SIZE * 2 + 1;
+        IntStream.range(0, size).forEach(i ->
+                underTest.insertCustomer(new Customer("customer " + i, "customer" + i + "@example.com", 20)));
+        List<Integer> streamed = new ArrayList<>();
+
+        //When
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> underTest.streamCustomers(0, customer -> {
+            streamed.add(customer.getId());
+            // a write from the consumer would wait forever on a read lock held by this thread
+            underTest.deleteCustomerById(customer.getId());
+        }));
+
+        //Then
+        assertThat(streamed).isEqualTo(IntStream.rangeClosed(1, size + 2).boxed().toList());
+        assertThat(underTest.selectAllCustomers()).isEmpty();
+    }
+
+    @Test
+    void itShouldUpdateOnlyGivenFields() {
+        //Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexander@gmail.com");
+        update.setAge(22);
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.UPDATED);
+        assertThat(underTest.updateCustomer(update)).isEqualTo(CustomerUpdateOutcome.UNCHANGED);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValue(new Customer(1, "Alex", "alexander@gmail.com", 22));
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alexander@gmail.com")).isTrue();
+    }
+
+    @Test
+    void itShouldRejectUpdateToTakenEmail() {
+        //Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("jamila@gmail.com");
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(underTest.selectCustomerById(1))
+                .hasValueSatisfying(c -> assertThat(c.getEmail()).isEqualTo("alex@gmail.com"));
+    }
+
+    @Test
+    void itShouldDeleteCustomerAndReleaseEmail() {
+        //When
+        underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(underTest.existsCustomerWithId(1)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(2);
+        assertThat(underTest.insertCustomerIfEmailAbsent(new Customer("Alex", "alex@gmail.com", 21)))
+                .hasValue(3);
+    }
+
+    @Test
+    void itShouldKeepIndexesConsistentAcrossGrowthAndDeletes() {
+        //Given
+        int count = 200_000;
+        IntStream.range(0, count).forEach(i ->
+                underTest.insertCustomer(new Customer("Customer" + i, "customer" + i + "@gmail.com", i % 100)));
+
+        //When
+        IntStream.range(0, count).filter(i -> i % 3 == 0).forEach(i -> underTest.deleteCustomerById(i + 3));
+
+        //Then
+        assertThat(underTest.selectAllCustomers()).hasSize(2 + count - (count + 2) / 3);
+        IntStream.range(0, count).forEach(i -> {
+            boolean kept = i % 3 != 0;
+            assertThat(underTest.existsCustomerWithId(i + 3)).isEqualTo(kept);
+            assertThat(underTest.existsCustomerWithEmail("customer" + i + "@gmail.com")).isEqualTo(kept);
+        });
+    }
+
+    @Test
+    void itShouldPageAfterIdSkippingDeletedRows() {
+        //Given
+        IntStream.range(0, 5).forEach(i ->
+                underTest.insertCustomer(new Customer("Customer" + i, "customer" + i + "@gmail.com", 20)));
+        underTest.deleteCustomerById(4);
+
+        //When
+        List<Customer> page = underTest.selectCustomerPage(2, 3);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(3, 5, 6);
+        assertThat(underTest.selectExistingEmails(List.of("customer0@gmail.com", "nobody@gmail.com")))
+                .isEqualTo(Set.of("customer0@gmail.com"));
+    }
+}
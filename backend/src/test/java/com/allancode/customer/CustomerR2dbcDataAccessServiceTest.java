@@ -0,0 +1,190 @@
+package com.allancode.customer;
+
+import com.allancode.AbstractTestContainersUnitTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainersUnitTest {
+
+    private CustomerR2dbcDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerR2dbcDataAccessService(getConnectionFactory());
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void itShouldInsertAndSelectCustomerById() {
+        //Given
+        Customer customer = new Customer(FAKER.name().fullName(), uniqueEmail(), 20);
+
+        //When
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).block();
+
+        //Then
+        StepVerifier.create(underTest.selectCustomerById(id))
+                .expectNext(new Customer(id, customer.getName(), customer.getEmail(), 20))
+                .verifyComplete();
+        StepVerifier.create(underTest.insertCustomerIfEmailAbsent(customer))
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldReturnEmptyWhenSelectCustomerById() {
+        //When
+        //Then
+        StepVerifier.create(underTest.selectCustomerById(-1))
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldStreamCustomersInIdOrderOnDemand() {
+        //Given
+        underTest.insertCustomers(List.of(
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 20),
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 21),
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 22)
+        )).block();
+
+        //When
+        List<Customer> customers = underTest.selectAllCustomers().collectList().block();
+
+        //Then
+        assertThat(customers).hasSizeGreaterThanOrEqualTo(3)
+                .isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        StepVerifier.create(underTest.streamCustomers(0), 1)
+                .expectNextCount(1)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void itShouldSelectCustomerPageOrderedAfterId() {
+        //Given
+        underTest.insertCustomers(List.of(
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 20),
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 21),
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 22)
+        )).block();
+        List<Customer> firstPage = underTest.selectCustomerPage(0, 2).collectList().block();
+
+        //When
+        List<Customer> nextPage = underTest.selectCustomerPage(firstPage.get(1).getId(), 2).collectList().block();
+
+        //Then
+        assertThat(firstPage).hasSize(2).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        assertThat(nextPage).isNotEmpty()
+                .allSatisfy(c -> assertThat(c.getId()).isGreaterThan(firstPage.get(1).getId()));
+    }
+
+    @Test
+    void itShouldSelectExistingEmails() {
+        //Given
+        String email = uniqueEmail();
+        underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), email, 20)).block();
+
+        //When
+        List<String> existing = underTest.selectExistingEmails(List.of(email, uniqueEmail())).collectList().block();
+
+        //Then
+        assertThat(existing).containsExactly(email);
+        StepVerifier.create(underTest.existsCustomerWithEmail(email))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldUpdateOnlyGivenFieldsAndDelete() {
+        //Given
+        Customer customer = new Customer(FAKER.name().fullName(), uniqueEmail(), 20);
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).block();
+        Customer update = new Customer();
+        update.setId(id);
+        update.setAge(30);
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(update))
+                .expectNext(CustomerUpdateOutcome.UPDATED)
+                .verifyComplete();
+        StepVerifier.create(underTest.updateCustomer(update))
+                .expectNext(CustomerUpdateOutcome.UNCHANGED)
+                .verifyComplete();
+        StepVerifier.create(underTest.selectCustomerById(id))
+                .expectNext(new Customer(id, customer.getName(), customer.getEmail(), 30))
+                .verifyComplete();
+        underTest.deleteCustomerById(id).block();
+        StepVerifier.create(underTest.existsCustomerWithId(id))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldInsertCustomersWithFreeEmailsAndSkipTakenOnes() {
+        //Given
+        String taken = uniqueEmail();
+        underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), taken, 20)).block();
+        Customer free = new Customer(FAKER.name().fullName(), uniqueEmail(), 30);
+
+        //When
+        //Then
+        StepVerifier.create(underTest.insertCustomersIfEmailAbsent(List.of(
+                        new Customer(FAKER.name().fullName(), taken, 40), free)))
+                .expectNext(free.getEmail())
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldReportTakenEmailWithoutWritingOnUpdate() {
+        //Given
+        String taken = uniqueEmail();
+        underTest.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), taken, 20)).block();
+        Integer id = underTest.insertCustomerIfEmailAbsent(
+                new Customer(FAKER.name().fullName(), uniqueEmail(), 20)).block();
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail(taken);
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(update))
+                .expectNext(CustomerUpdateOutcome.EMAIL_TAKEN)
+                .verifyComplete();
+        StepVerifier.create(underTest.selectCustomerById(id).map(Customer::getEmail))
+                .expectNextMatches(email -> !email.equals(taken))
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldReportMissingCustomerOnUpdate() {
+        //Given
+        Customer update = new Customer();
+        update.setId(-1);
+        update.setName(FAKER.name().fullName());
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(update))
+                .expectNext(CustomerUpdateOutcome.NOT_FOUND)
+                .verifyComplete();
+    }
+
+    private static String uniqueEmail() {
+        return FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+}
@@ -1,13 +1,19 @@
 package com.allancode.customer;
 
 import com.allancode.AbstractTestContainersUnitTest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Table;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -17,6 +23,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 class CustomerRepositoryTest extends AbstractTestContainersUnitTest {
     @Autowired
     private CustomerRepository underTest;
+    @Autowired
+    private EntityManager entityManager;
 
 
 
@@ -82,6 +90,22 @@ class CustomerRepositoryTest extends AbstractTestContainersUnitTest {
 
 
     }
+    @Test
+    void itShouldInsertIfEmailAbsent() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+
+        //When
+        Optional<Integer> id = underTest.insertIfEmailAbsent(FAKER.name().fullName(), email, 20);
+        Optional<Integer> duplicate = underTest.insertIfEmailAbsent(FAKER.name().fullName(), email, 20);
+
+        //Then
+        assertThat(id).isPresent();
+        assertThat(duplicate).isEmpty();
+        assertThat(underTest.existsCustomerById(id.get())).isTrue();
+
+    }
+
     @Test
     void itShouldReturnFalseWhenCustomerDoesNotExistWithId() {
         //Given
@@ -95,4 +119,178 @@ class CustomerRepositoryTest extends AbstractTestContainersUnitTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void itShouldInsertAllWithFreeEmails() {
+        //Given
+        String taken = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String free = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        underTest.insertIfEmailAbsent(FAKER.name().fullName(), taken, 20);
+
+        //When
+        List<String> inserted = underTest.insertAllIfEmailAbsent(
+                new String[]{"taken", "free"}, new String[]{taken, free}, new Integer[]{30, 40});
+
+        //Then
+        assertThat(inserted).containsExactly(free);
+        assertThat(underTest.findExistingEmails(new String[]{taken, free})).containsExactlyInAnyOrder(taken, free);
+    }
+
+    @Test
+    void itShouldPersistAllInBatches() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            customers.add(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+
+        //When
+        underTest.persistAllInBatches(customers);
+
+        //Then
+        assertThat(customers).extracting(Customer::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(underTest.findAllById(customers.stream().map(Customer::getId).toList())).hasSize(120);
+
+    }
+
+    @Test
+    void itShouldKeepColumnDefaultIdsConsecutiveAndApartFromPooledIds() {
+        //Given
+        Customer pooled = new Customer(FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20);
+        underTest.persistAllInBatches(List.of(pooled));
+
+        //When
+        Integer first = underTest.insertIfEmailAbsent(FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20).orElseThrow();
+        Integer second = underTest.insertIfEmailAbsent(FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20).orElseThrow();
+
+        //Then
+        assertThat(second).isEqualTo(first + 1);
+        assertThat(first).isLessThan(1_000_000_000);
+        assertThat(pooled.getId()).isGreaterThanOrEqualTo(1_000_000_000);
+    }
+
+    @Test
+    void itShouldFindPageOfDetachedCustomers() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            customers.add(new Customer(
+                    FAKER.name().fullName(),
+                    FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        underTest.persistAllInBatches(customers);
+        Integer afterId = customers.get(0).getId() - 1;
+
+        //When
+        List<Customer> page = underTest.findPageDetached(afterId, Limit.of(2));
+
+        //Then
+        assertThat(page).containsExactly(customers.get(0), customers.get(1));
+        assertThat(page).noneMatch(entityManager::contains);
+
+    }
+
+    @Test
+    void itShouldFindAllDetachedCustomers() {
+        //Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        underTest.persistAllInBatches(List.of(customer));
+
+        //When
+        List<Customer> all = underTest.findAllDetached();
+
+        //Then
+        assertThat(all).contains(customer);
+        assertThat(all).noneMatch(entityManager::contains);
+
+    }
+
+    @Test
+    void itShouldFindExistingIdsAndEmails() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.insertIfEmailAbsent(FAKER.name().fullName(), email, 20).orElseThrow();
+
+        //When
+        Set<Integer> ids = underTest.findExistingIds(new Integer[]{id, -1});
+        Set<String> emails = underTest.findExistingEmails(new String[]{email, "missing-" + UUID.randomUUID()});
+
+        //Then
+        assertThat(ids).containsExactly(id);
+        assertThat(emails).containsExactly(email);
+
+    }
+
+    @Test
+    void itShouldUpdateOnlyWhenSomethingChanges() {
+        //Given
+        String email = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        String otherEmail = FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.insertIfEmailAbsent("foo", email, 20).orElseThrow();
+        underTest.insertIfEmailAbsent("bar", otherEmail, 20);
+
+        //When
+        String unchanged = underTest.updateIfChanged(id, "foo", null, 20);
+        String emailTaken = underTest.updateIfChanged(id, null, otherEmail, null);
+        String missing = underTest.updateIfChanged(-1, "baz", null, null);
+        String updated = underTest.updateIfChanged(id, "baz", null, null);
+
+        //Then
+        assertThat(unchanged).isEqualTo("UNCHANGED");
+        assertThat(emailTaken).isEqualTo("EMAIL_TAKEN");
+        assertThat(missing).isEqualTo("NOT_FOUND");
+        assertThat(updated).isEqualTo("UPDATED");
+        assertThat(underTest.findPageDetached(id - 1, Limit.of(1)))
+                .containsExactly(new Customer(id, "baz", email, 20));
+
+    }
+
+    @Test
+    void itShouldNameTheEmailConstraintAsTheSchemaDoes() {
+        //Given
+        Table table = Customer.class.getAnnotation(Table.class);
+
+        //When
+        Object constraints = entityManager.createNativeQuery(
+                        "SELECT count(*) FROM pg_constraint WHERE conname = ?1 AND contype = 'u'")
+                .setParameter(1, table.uniqueConstraints()[0].name())
+                .getSingleResult();
+
+        //Then
+        assertThat(((Number) constraints).intValue()).isEqualTo(1);
+
+    }
+
+    @Test
+    void itShouldAllocateIdsAboveTheColumnDefaultRange() {
+        //Given
+        Customer customer = new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+
+        //When
+        Integer id = underTest.save(customer).getId();
+        Integer defaultId = underTest.insertIfEmailAbsent(
+                "foo", FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(), 20).orElseThrow();
+
+        //Then
+        assertThat(id).isGreaterThanOrEqualTo(1_000_000_000);
+        assertThat(defaultId).isLessThan(1_000_000_000);
+
+    }
+
+}
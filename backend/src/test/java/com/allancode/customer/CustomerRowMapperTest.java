@@ -3,12 +3,20 @@ package com.allancode.customer;
 import org.junit.jupiter.api.Test;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyChar;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CustomerRowMapperTest {
@@ -18,8 +26,10 @@ class CustomerRowMapperTest {
         //Given
         CustomerRowMapper customerRowMapper = new CustomerRowMapper();
         ResultSet resultSet = mock(ResultSet.class);
-        when(resultSet.getInt("id")).thenReturn(1);
-        when(resultSet.getInt("age")).thenReturn(19);
+        when(resultSet.findColumn("id")).thenReturn(1);
+        when(resultSet.findColumn("age")).thenReturn(4);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(4)).thenReturn(19);
         when(resultSet.getString("name")).thenReturn("Jamila");
         when(resultSet.getString("email")).thenReturn("jamila@gmail.com");
 
@@ -33,4 +43,102 @@ class CustomerRowMapperTest {
         assertThat(actual).isEqualTo(expected);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void itShouldMapNullAgeToNull() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.findColumn("id")).thenReturn(1);
+        when(resultSet.findColumn("age")).thenReturn(4);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(4)).thenReturn(0);
+        when(resultSet.wasNull()).thenReturn(false, true);
+        when(resultSet.getString("name")).thenReturn("Jamila");
+        when(resultSet.getString("email")).thenReturn("jamila@gmail.com");
+
+        //When
+        Customer actual = customerRowMapper.mapRow(resultSet, 1);
+
+        //Then
+        assertThat(actual.getId()).isEqualTo(1);
+        assertThat(actual.getAge()).isNull();
+    }
+
+    @Test
+    void itShouldResolveColumnsOnceAndExtractByPosition() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        ResultSet resultSet = twoRows();
+
+        //When
+        List<Customer> actual = customerRowMapper.listExtractor().extractData(resultSet);
+
+        //Then
+        assertThat(actual).containsExactly(
+                new Customer(1, "Jamila", "jamila@gmail.com", 19),
+                new Customer(2, "Ali", "ali@gmail.com", null)
+        );
+        verify(resultSet.getMetaData(), never()).getColumnName(anyInt());
+        verify(resultSet, never()).getString(anyString());
+        verify(resultSet, never()).findColumn(anyString());
+    }
+
+    @Test
+    void itShouldStreamRowsIntoAnyRecord() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        ResultSet resultSet = twoRows();
+        record Contact(String name, String email) {
+        }
+        List<Contact> contacts = new ArrayList<>();
+
+        //When
+        customerRowMapper.forEach(resultSet, (id, name, email, age) -> new Contact(name, email), contacts::add);
+
+        //Then
+        assertThat(contacts).containsExactly(
+                new Contact("Jamila", "jamila@gmail.com"),
+                new Contact("Ali", "ali@gmail.com")
+        );
+    }
+
+    @Test
+    void itShouldRejectResultSetWithoutCustomerColumns() throws SQLException {
+        //Given
+        CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(metaData.getColumnLabel(1)).thenReturn("id");
+
+        //When
+        //Then
+        assertThatThrownBy(() -> customerRowMapper.forEach(resultSet, customer -> { }))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("customer columns");
+    }
+
+    /**
+     * Columns in a different order than the DAO selects them, second row has a NULL age.
+     */
+    private static ResultSet twoRows() throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(4);
+        when(metaData.getColumnLabel(1)).thenReturn("email");
+        when(metaData.getColumnLabel(2)).thenReturn("AGE");
+        when(metaData.getColumnLabel(3)).thenReturn("id");
+        when(metaData.getColumnLabel(4)).thenReturn("name");
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getString(1)).thenReturn("jamila@gmail.com", "ali@gmail.com");
+        when(resultSet.getInt(2)).thenReturn(19, 0);
+        when(resultSet.getInt(3)).thenReturn(1, 2);
+        when(resultSet.getString(4)).thenReturn("Jamila", "Ali");
+        // id, age of the first row then id, age of the second
+        when(resultSet.wasNull()).thenReturn(false, false, false, true);
+        return resultSet;
+    }
+}
@@ -0,0 +1,109 @@
+package com.allancode.customer;
+
+import com.allancode.AbstractTestContainersUnitTest;
+import com.allancode.datasource.DatabaseRoundTrips;
+import com.allancode.datasource.StatementBudgetExceededException;
+import com.allancode.datasource.StatementCountingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Pins the statements each service operation sends on the jdbc backend. A failure here means a
+ * change added a round trip to one of these paths; raise the number only on purpose, together with
+ * the budget in application.yml.
+ */
+class CustomerServiceRoundTripTest extends AbstractTestContainersUnitTest {
+    private CustomerService underTest;
+    private CustomerJDBCDataAccessService customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(
+                new StatementCountingDataSource(getJdbcTemplate().getDataSource()));
+        customerDAO = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper());
+        underTest = new CustomerService(customerDAO);
+    }
+
+    @Test
+    void itShouldRegisterInOneStatement() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(
+                FAKER.name().fullName(), uniqueEmail(), 20);
+
+        //When
+        //Then
+        DatabaseRoundTrips.measure(() -> underTest.addCustomer(request)).requireAtMost(1);
+    }
+
+    @Test
+    void itShouldGetCustomerInOneStatement() {
+        //Given
+        Integer id = insertCustomer();
+
+        //When
+        //Then
+        DatabaseRoundTrips.measure(() -> underTest.getCustomer(id)).requireAtMost(1);
+    }
+
+    @Test
+    void itShouldGetPageInOneStatement() {
+        //Given
+        insertCustomer();
+
+        //When
+        //Then
+        DatabaseRoundTrips.measure(() -> underTest.getCustomerPage(null, 10)).requireAtMost(1);
+    }
+
+    @Test
+    void itShouldUpdateInOneStatement() {
+        //Given
+        Integer id = insertCustomer();
+        CustomerUpdateRequest update = new CustomerUpdateRequest("Changed Name", uniqueEmail(), 40);
+
+        //When
+        //Then
+        DatabaseRoundTrips.measure(() -> underTest.updateCustomer(id, update)).requireAtMost(1);
+    }
+
+    @Test
+    void itShouldRemoveInTwoStatements() {
+        //Given
+        Integer id = insertCustomer();
+
+        //When
+        //Then
+        DatabaseRoundTrips.measure(() -> underTest.removeCustomerById(id)).requireAtMost(2);
+    }
+
+    @Test
+    void itShouldListTheStatementsOverBudget() {
+        //Given
+        Integer id = insertCustomer();
+
+        //When
+        DatabaseRoundTrips.Usage usage = DatabaseRoundTrips.measure(() -> underTest.removeCustomerById(id));
+
+        //Then
+        assertThat(usage.sql()).hasSize(2);
+        assertThatThrownBy(() -> usage.requireAtMost(1))
+                .isInstanceOf(StatementBudgetExceededException.class)
+                .hasMessageContaining("2 statements, budget 1")
+                .hasMessageContaining("DELETE");
+    }
+
+    private Integer insertCustomer() {
+        return customerDAO.insertCustomerIfEmailAbsent(new Customer(FAKER.name().fullName(), uniqueEmail(), 20))
+                .orElseThrow();
+    }
+
+    private static String uniqueEmail() {
+        return FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID();
+    }
+}
@@ -11,7 +11,10 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -38,6 +41,66 @@ class CustomerServiceTest {
 
     }
 
+    @Test
+    void itShouldGetFirstCustomerPageWithNextCursor() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19),
+                new Customer(2, "Jamila", "jamila@gmail.com", 21),
+                new Customer(3, "Eve", "eve@gmail.com", 30)
+        );
+        when(customerDAO.selectCustomerPage(0, 3)).thenReturn(customers);
+
+        //When
+        CustomerPage actual = underTest.getCustomerPage(null, 2);
+
+        //Then
+        assertThat(actual.customers()).containsExactly(customers.get(0), customers.get(1));
+        assertThat(actual.nextCursor()).isNotNull();
+
+        when(customerDAO.selectCustomerPage(2, 3)).thenReturn(List.of(customers.get(2)));
+        CustomerPage next = underTest.getCustomerPage(actual.nextCursor(), 2);
+        assertThat(next.customers()).containsExactly(customers.get(2));
+        assertThat(next.nextCursor()).isNull();
+    }
+
+    @Test
+    void itShouldThrowWhenCustomerPageCursorIsInvalid() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerPage("not-a-cursor", 10))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("invalid page cursor");
+
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void itShouldThrowWhenCustomerPageSizeIsOutOfRange() {
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.getCustomerPage(null, 0))
+                .isInstanceOf(RequestValidationException.class);
+        assertThatThrownBy(() -> underTest.getCustomerPage(null, CustomerService.MAX_PAGE_SIZE + 1))
+                .isInstanceOf(RequestValidationException.class);
+
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void itShouldExportCustomersAfterId() {
+        //Given
+        Consumer<Customer> consumer = customer -> { };
+
+        //When
+        underTest.exportCustomers(null, consumer);
+        underTest.exportCustomers(42, consumer);
+
+        //Then
+        verify(customerDAO).streamCustomers(0, consumer);
+        verify(customerDAO).streamCustomers(42, consumer);
+    }
+
     @Test
     void itShouldGetCustomer() {
         //Given
@@ -72,7 +135,7 @@ class CustomerServiceTest {
     void itShouldAddCustomer() {
         //Given
         String email = "alex@gmail.com";
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(false);
+        when(customerDAO.insertCustomerIfEmailAbsent(any())).thenReturn(Optional.of(1));
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", email, 19);
 
@@ -81,7 +144,7 @@ class CustomerServiceTest {
 
         //Then
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
-        verify(customerDAO).insertCustomer(customerArgumentCaptor.capture());
+        verify(customerDAO).insertCustomerIfEmailAbsent(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
         assertThat(capturedCustomer.getId()).isNull();
@@ -89,13 +152,14 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
 
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
     }
 
     @Test
     void itShouldThrowWhenEmailExistsWhenAddCustomer() {
         //Given
         String email = "alex@gmail.com";
-        when(customerDAO.existsCustomerWithEmail(email)).thenReturn(true);
+        when(customerDAO.insertCustomerIfEmailAbsent(any())).thenReturn(Optional.empty());
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("Alex", email, 19);
 
@@ -105,9 +169,56 @@ class CustomerServiceTest {
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("Email already taken");
 
+    }
+
+    @Test
+    void itShouldAddCustomersInBatchReportingEachItem() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 21),
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest(null, "eve@gmail.com", 30)
+        );
+        when(customerDAO.insertCustomersIfEmailAbsent(anyList())).thenReturn(Set.of("alex@gmail.com"));
 
-        verify(customerDAO, never()).insertCustomer(any());
+        //When
+        List<CustomerRegistrationResult> results = underTest.addCustomers(requests);
 
+        //Then
+        assertThat(results).extracting(CustomerRegistrationResult::status).containsExactly(
+                CustomerRegistrationResult.Status.CREATED,
+                CustomerRegistrationResult.Status.DUPLICATE,
+                CustomerRegistrationResult.Status.DUPLICATE,
+                CustomerRegistrationResult.Status.INVALID
+        );
+        assertThat(results).extracting(CustomerRegistrationResult::index).containsExactly(0, 1, 2, 3);
+
+        ArgumentCaptor<List<Customer>> captor = ArgumentCaptor.forClass(List.class);
+        verify(customerDAO).insertCustomersIfEmailAbsent(captor.capture());
+        assertThat(captor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com");
+        verify(customerDAO, never()).selectExistingEmails(any());
+    }
+
+    @Test
+    void itShouldReportEmailsTakenAtInsertAsDuplicates() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19)
+        );
+        when(customerDAO.insertCustomersIfEmailAbsent(anyList())).thenReturn(Set.of());
+
+        //When
+        List<CustomerRegistrationResult> results = underTest.addCustomers(requests, 100);
+
+        //Then
+        assertThat(results).singleElement().satisfies(r -> {
+            assertThat(r.index()).isEqualTo(100);
+            assertThat(r.status()).isEqualTo(CustomerRegistrationResult.Status.DUPLICATE);
+            assertThat(r.message()).isEqualTo("Email already taken");
+        });
     }
 
     @Test
@@ -144,12 +255,7 @@ class CustomerServiceTest {
         //Given
         int id = 10;
         CustomerUpdateRequest request = new CustomerUpdateRequest("Alex", "Alex",  19);
-
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19
-        );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
-        when(customerDAO.existsCustomerWithEmail(request.email())).thenReturn(false);
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.UPDATED);
 
         //When
         underTest.updateCustomer(id, request);
@@ -164,21 +270,17 @@ class CustomerServiceTest {
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
-
+        verify(customerDAO, never()).selectCustomerById(any());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
     }
 
     @Test
     void itShouldUpdateOnlyCustomerName() {
         //Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", null, 19
-        );
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 "Jamila", null,  null);
-
-
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.UPDATED);
 
         //When
         underTest.updateCustomer(id, request);
@@ -191,8 +293,8 @@ class CustomerServiceTest {
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(request.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
@@ -201,13 +303,7 @@ class CustomerServiceTest {
         int id = 10;
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 null, "Alex@gmail.com",  null);
-
-        Customer customer = new Customer(
-                id, "Alex", "eve@gmail.com", 19
-        );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
-        when(customerDAO.existsCustomerWithEmail(request.email())).thenReturn(false);
-
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.UPDATED);
 
         //When
         underTest.updateCustomer(id, request);
@@ -219,9 +315,9 @@ class CustomerServiceTest {
 
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getName()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(request.email());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
@@ -230,11 +326,7 @@ class CustomerServiceTest {
         int id = 10;
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 null, null,  20);
-
-        Customer customer = new Customer(
-                id, "Alex", "eve@gmail.com", 19
-        );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.UPDATED);
 
         //When
         underTest.updateCustomer(id, request);
@@ -246,8 +338,8 @@ class CustomerServiceTest {
 
 
         assertThat(capturedCustomer.getId()).isEqualTo(id);
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getAge()).isEqualTo(request.age());
     }
 
@@ -258,44 +350,43 @@ class CustomerServiceTest {
         String newEmail = "allan@gmail.com";
         CustomerUpdateRequest request = new CustomerUpdateRequest(
                 "Alex", newEmail,  20);
-
-        Customer customer = new Customer(
-                id, "Alex", "eve@yahoo.com", 19
-        );
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
-        when(customerDAO.existsCustomerWithEmail(newEmail)).thenReturn(true);
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.EMAIL_TAKEN);
 
         //When
+        //Then
         assertThatThrownBy(() ->underTest.updateCustomer(id, request))
                 .isInstanceOf(DuplicateResourceException.class)
                 .hasMessage("email already taken");
-
-        //Then
-        verify(customerDAO, never()).updateCustomer(any());
     }
 
     @Test
     void itShouldThrowWhenUpdateAllCustomerHasNoChanges() {
         //Given
         int id = 10;
-        Customer customer = new Customer(
-                id, "Alex", "alex@gmail.com", 19
-        );
         CustomerUpdateRequest request = new CustomerUpdateRequest(
-                customer.getName(),
-                customer.getEmail(),
-                customer.getAge());
-
-
-        when(customerDAO.selectCustomerById(id)).thenReturn(Optional.of(customer));
+                "Alex", "alex@gmail.com", 19);
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.UNCHANGED);
 
         //When
+        //Then
         assertThatThrownBy(() ->underTest.updateCustomer(id, request))
                 .isInstanceOf(RequestValidationException.class)
                 .hasMessage("no data changes found");
+    }
 
+    @Test
+    void itShouldThrowWhenUpdatedCustomerDoesNotExist() {
+        //Given
+        int id = 10;
+        CustomerUpdateRequest request = new CustomerUpdateRequest(
+                "Alex", null, null);
+        when(customerDAO.updateCustomer(any())).thenReturn(CustomerUpdateOutcome.NOT_FOUND);
+
+        //When
         //Then
-        verify(customerDAO, never()).updateCustomer(any());
-    }
+        assertThatThrownBy(() ->underTest.updateCustomer(id, request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessage("customer with id does not exist");
     }
+}
 
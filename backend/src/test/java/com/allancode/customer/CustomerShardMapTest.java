@@ -0,0 +1,64 @@
+package com.allancode.customer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerShardMapTest {
+
+    @Test
+    void itShouldSpreadSequentialIdsEvenlyOverShards() {
+        //Given
+        CustomerShardMap underTest = CustomerShardMap.of(1024, List.of("a", "b", "c", "d"), List.of());
+
+        //When
+        Map<String, Integer> counts = new HashMap<>();
+        for (int id = 1; id <= 100_000; id++) {
+            counts.merge(underTest.owner(id), 1, Integer::sum);
+        }
+
+        //Then
+        assertThat(counts).hasSize(4);
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(23_000, 27_000));
+    }
+
+    @Test
+    void itShouldRouteMovingBucketsToNewOwnerAndRememberOldOne() {
+        //Given
+        CustomerShardMap underTest = CustomerShardMap.of(8, List.of("a", "b"), List.of(
+                new CustomerShardMap.BucketRange(0, 3, "a", null),
+                new CustomerShardMap.BucketRange(4, 7, "b", "a")
+        ));
+        int movingId = 1;
+        while (underTest.bucket(movingId) < 4) {
+            movingId++;
+        }
+
+        //When
+        String owner = underTest.owner(movingId);
+        String movingFrom = underTest.movingFrom(movingId);
+        CustomerShardMap settled = underTest.settled();
+
+        //Then
+        assertThat(underTest.isMoving()).isTrue();
+        assertThat(owner).isEqualTo("b");
+        assertThat(movingFrom).isEqualTo("a");
+        assertThat(settled.isMoving()).isFalse();
+        assertThat(settled.owner(movingId)).isEqualTo("b");
+    }
+
+    @Test
+    void itShouldRejectUnassignedBuckets() {
+        //When
+        //Then
+        assertThatThrownBy(() -> CustomerShardMap.of(8, List.of("a"), List.of(
+                new CustomerShardMap.BucketRange(0, 6, "a", null))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("bucket 7 is not assigned to a shard");
+    }
+}
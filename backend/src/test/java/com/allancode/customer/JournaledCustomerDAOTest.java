@@ -0,0 +1,180 @@
+package com.allancode.customer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JournaledCustomerDAOTest {
+    private static final long REGION_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(JournaledCustomerDAO.FsyncPolicy.class)
+    void itShouldRecoverWritesAfterRestart(JournaledCustomerDAO.FsyncPolicy fsyncPolicy) throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(fsyncPolicy);
+        underTest.insertCustomer(new Customer("Eve", "eve@gmail.com", null));
+        Customer update = new Customer();
+        update.setId(1);
+        update.setEmail("alexander@gmail.com");
+        underTest.updateCustomer(update);
+        underTest.deleteCustomerById(2);
+        List<Customer> expected = underTest.selectAllCustomers();
+        underTest.close();
+
+        //When
+        JournaledCustomerDAO recovered = open(fsyncPolicy);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).isEqualTo(expected).containsExactly(
+                new Customer(1, "Alex", "alexander@gmail.com", 21),
+                new Customer(3, "Eve", "eve@gmail.com", null)
+        );
+        assertThat(recovered.existsCustomerWithEmail("alex@gmail.com")).isFalse();
+        recovered.close();
+    }
+
+    @Test
+    void itShouldReplayLogsSpanningSeveralRegions() throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(JournaledCustomerDAO.FsyncPolicy.NONE);
+        for (int i = 0; i < 1_000; i++) {
+            underTest.insertCustomer(new Customer("Customer" + i, "customer" + i + "@gmail.com", i % 100));
+        }
+        underTest.close();
+
+        //When
+        JournaledCustomerDAO recovered = open(JournaledCustomerDAO.FsyncPolicy.NONE);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).hasSize(1_002);
+        assertThat(recovered.selectCustomerById(1_002))
+                .hasValue(new Customer(1_002, "Customer999", "customer999@gmail.com", 99));
+        recovered.close();
+    }
+
+    @Test
+    void itShouldStopReplayAtTornRecord() throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        underTest.insertCustomer(new Customer("Eve", "eve@gmail.com", 30));
+        underTest.insertCustomer(new Customer("Bob", "bob@gmail.com", 40));
+        underTest.close();
+        Path log = onlyFile(".wal");
+        corruptLastByteOfSecondRecord(log);
+
+        //When
+        JournaledCustomerDAO recovered = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+
+        //Then
+        assertThat(recovered.selectAllCustomers()).extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com", "eve@gmail.com");
+        recovered.close();
+    }
+
+    @Test
+    void itShouldCompactIntoSnapshotAndDropOldFiles() throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        underTest.insertCustomer(new Customer("Eve", "eve@gmail.com", 30));
+
+        //When
+        underTest.snapshot();
+        underTest.insertCustomer(new Customer("Bob", "bob@gmail.com", 40));
+        underTest.close();
+
+        //Then
+        assertThat(files(".snapshot")).hasSize(1);
+        assertThat(files(".wal")).hasSize(1);
+        JournaledCustomerDAO recovered = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        assertThat(recovered.selectAllCustomers()).extracting(Customer::getEmail)
+                .containsExactly("alex@gmail.com", "jamila@gmail.com", "eve@gmail.com", "bob@gmail.com");
+        recovered.close();
+    }
+
+    @Test
+    void itShouldRejectBatchWithTakenEmailWithoutApplyingAnyOfIt() throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        List<Customer> batch = List.of(
+                new Customer("Eve", "eve@gmail.com", 30),
+                new Customer("Alex", "alex@gmail.com", 21));
+
+        //When
+        assertThatThrownBy(() -> underTest.insertCustomers(batch))
+                .isInstanceOf(DuplicateKeyException.class);
+        underTest.close();
+
+        //Then
+        assertThat(underTest.existsCustomerWithEmail("eve@gmail.com")).isFalse();
+        JournaledCustomerDAO recovered = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        assertThat(recovered.selectAllCustomers()).hasSize(2);
+        recovered.close();
+    }
+
+    @Test
+    void itShouldRefuseOlderSnapshotWhenTheLogsSinceAreGone() throws IOException {
+        //Given
+        JournaledCustomerDAO underTest = open(JournaledCustomerDAO.FsyncPolicy.ALWAYS);
+        Path older = onlyFile(".snapshot");
+        byte[] olderSnapshot = Files.readAllBytes(older);
+        underTest.insertCustomer(new Customer("Eve", "eve@gmail.com", 30));
+        underTest.snapshot();
+        underTest.close();
+        Path newest = onlyFile(".snapshot");
+        Files.write(older, olderSnapshot);
+        Files.write(newest, new byte[]{1, 2, 3});
+
+        //When
+        //Then
+        assertThatThrownBy(() -> open(JournaledCustomerDAO.FsyncPolicy.ALWAYS))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("would lose writes");
+    }
+
+    private JournaledCustomerDAO open(JournaledCustomerDAO.FsyncPolicy fsyncPolicy) throws IOException {
+        JournaledCustomerDAO journaledCustomerDAO = new JournaledCustomerDAO(
+                new CustomerDataAccessService(), directory, fsyncPolicy, REGION_SIZE);
+        journaledCustomerDAO.open();
+        return journaledCustomerDAO;
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.toString().endsWith(suffix)).toList();
+        }
+    }
+
+    private Path onlyFile(String suffix) throws IOException {
+        List<Path> files = files(suffix);
+        assertThat(files).hasSize(1);
+        return files.get(0);
+    }
+
+    private static void corruptLastByteOfSecondRecord(Path log) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(header, 0);
+            long second = Integer.BYTES * 2L + header.flip().getInt();
+            channel.read(header.clear(), second);
+            long lastByte = second + Integer.BYTES * 2L + header.flip().getInt() - 1;
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), lastByte);
+        }
+    }
+}
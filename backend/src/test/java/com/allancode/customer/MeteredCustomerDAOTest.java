@@ -0,0 +1,90 @@
+package com.allancode.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+class MeteredCustomerDAOTest {
+    private MeteredCustomerDAO underTest;
+    private MeterRegistry meterRegistry;
+    private AutoCloseable autoCloseable;
+    @Mock
+    private CustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new MeteredCustomerDAO(customerDAO, meterRegistry, "jdbc");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    @Test
+    void itShouldTimeLookupsByWhatTheyFound() {
+        //Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 19)));
+        when(customerDAO.selectCustomerById(2)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+        underTest.selectCustomerById(2);
+
+        //Then
+        assertThat(count("selectCustomerById", "found")).isEqualTo(1);
+        assertThat(count("selectCustomerById", "missing")).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldTimeUpdatesByOutcome() {
+        //Given
+        Customer update = new Customer(1, "Alex", null, null);
+        when(customerDAO.updateCustomer(update)).thenReturn(CustomerUpdateOutcome.EMAIL_TAKEN);
+
+        //When
+        CustomerUpdateOutcome actual = underTest.updateCustomer(update);
+
+        //Then
+        assertThat(actual).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(count("updateCustomer", "email_taken")).isEqualTo(1);
+        assertThat(count("updateCustomer", "updated")).isZero();
+    }
+
+    @Test
+    void itShouldTimeFailuresWithTheException() {
+        //Given
+        when(customerDAO.existsCustomerWithEmail("alex@gmail.com")).thenThrow(new QueryTimeoutException("slow"));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.existsCustomerWithEmail("alex@gmail.com"))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(meterRegistry.get(MeteredCustomerDAO.TIMER_NAME)
+                .tags("method", "existsCustomerWithEmail", "outcome", "error", "exception", "QueryTimeoutException")
+                .timer()
+                .count()).isEqualTo(1);
+        assertThat(count("existsCustomerWithEmail", "success")).isZero();
+    }
+
+    private long count(String method, String outcome) {
+        return meterRegistry.get(MeteredCustomerDAO.TIMER_NAME)
+                .tags("backend", "jdbc", "method", method, "outcome", outcome, "exception", "none")
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,175 @@
+package com.allancode.customer;
+
+import com.allancode.exception.DuplicateResourceException;
+import com.allancode.exception.RequestValidationException;
+import com.allancode.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+    private ReactiveCustomerService underTest;
+    @Mock
+    private ReactiveCustomerDAO customerDAO;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDAO);
+    }
+
+    @Test
+    void itShouldGetFirstCustomerPageWithNextCursor() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 19),
+                new Customer(2, "Jamila", "jamila@gmail.com", 21),
+                new Customer(3, "Eve", "eve@gmail.com", 30)
+        );
+        when(customerDAO.selectCustomerPage(0, 3)).thenReturn(Flux.fromIterable(customers));
+
+        //When
+        //Then
+        StepVerifier.create(underTest.getCustomerPage(null, 2))
+                .assertNext(page -> {
+                    assertThat(page.customers()).containsExactly(customers.get(0), customers.get(1));
+                    assertThat(page.nextCursor()).isEqualTo(CustomerService.encodeCursor(2));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void itShouldRejectInvalidPageRequests() {
+        //When
+        //Then
+        StepVerifier.create(underTest.getCustomerPage(null, CustomerService.MAX_PAGE_SIZE + 1))
+                .verifyError(RequestValidationException.class);
+        StepVerifier.create(underTest.getCustomerPage("not a cursor!", 10))
+                .verifyError(RequestValidationException.class);
+        verifyNoInteractions(customerDAO);
+    }
+
+    @Test
+    void itShouldThrowWhenCustomerDoesNotExist() {
+        //Given
+        when(customerDAO.selectCustomerById(1)).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        StepVerifier.create(underTest.getCustomer(1))
+                .verifyErrorMessage("customer with id does not exist");
+    }
+
+    @Test
+    void itShouldThrowWhenEmailTakenOnAdd() {
+        //Given
+        when(customerDAO.insertCustomerIfEmailAbsent(any())).thenReturn(Mono.empty());
+
+        //When
+        //Then
+        StepVerifier.create(underTest.addCustomer(new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19)))
+                .verifyError(DuplicateResourceException.class);
+    }
+
+    @Test
+    void itShouldRegisterBatchReportingDuplicatesAndInvalidEntries() {
+        //Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 19),
+                new CustomerRegistrationRequest("Eve", "eve@gmail.com", 30),
+                new CustomerRegistrationRequest("Eve", "eve@gmail.com", 31),
+                new CustomerRegistrationRequest("Bob", null, 40)
+        );
+        when(customerDAO.insertCustomersIfEmailAbsent(any())).thenReturn(Flux.just("eve@gmail.com"));
+
+        //When
+        List<CustomerRegistrationResult> results = underTest.addCustomers(requests, 10).block();
+
+        //Then
+        assertThat(results).extracting(CustomerRegistrationResult::status).containsExactly(
+                CustomerRegistrationResult.Status.DUPLICATE,
+                CustomerRegistrationResult.Status.CREATED,
+                CustomerRegistrationResult.Status.DUPLICATE,
+                CustomerRegistrationResult.Status.INVALID
+        );
+        assertThat(results).extracting(CustomerRegistrationResult::index).containsExactly(10, 11, 12, 13);
+        verify(customerDAO).insertCustomersIfEmailAbsent(List.of(
+                new Customer("Alex", "alex@gmail.com", 19),
+                new Customer("Eve", "eve@gmail.com", 30)));
+    }
+
+    @Test
+    void itShouldThrowWhenRemovingMissingCustomer() {
+        //Given
+        when(customerDAO.existsCustomerWithId(1)).thenReturn(Mono.just(false));
+
+        //When
+        //Then
+        StepVerifier.create(underTest.removeCustomerById(1))
+                .verifyError(ResourceNotFoundException.class);
+        verify(customerDAO, never()).deleteCustomerById(any());
+    }
+
+    @Test
+    void itShouldUpdateInOneCallWithoutReadingFirst() {
+        //Given
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.just(CustomerUpdateOutcome.UPDATED));
+
+        //When
+        underTest.updateCustomer(1, new CustomerUpdateRequest(null, "alexander@gmail.com", null)).block();
+
+        //Then
+        ArgumentCaptor<Customer> captor = ArgumentCaptor.forClass(Customer.class);
+        verify(customerDAO).updateCustomer(captor.capture());
+        assertThat(captor.getValue()).isEqualTo(new Customer(1, null, "alexander@gmail.com", null));
+        verify(customerDAO, never()).selectCustomerById(any());
+        verify(customerDAO, never()).existsCustomerWithEmail(any());
+    }
+
+    @Test
+    void itShouldReportTakenEmailOnUpdate() {
+        //Given
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.just(CustomerUpdateOutcome.EMAIL_TAKEN));
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1, new CustomerUpdateRequest(null, "alexander@gmail.com", null)))
+                .verifyErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(DuplicateResourceException.class)
+                        .hasMessage("email already taken"));
+    }
+
+    @Test
+    void itShouldThrowWhenUpdatingMissingCustomer() {
+        //Given
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.just(CustomerUpdateOutcome.NOT_FOUND));
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1, new CustomerUpdateRequest("Alex", null, null)))
+                .verifyError(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void itShouldThrowWhenUpdateHasNoChanges() {
+        //Given
+        when(customerDAO.updateCustomer(any())).thenReturn(Mono.just(CustomerUpdateOutcome.UNCHANGED));
+
+        //When
+        //Then
+        StepVerifier.create(underTest.updateCustomer(1, new CustomerUpdateRequest("Alex", "alex@gmail.com", 19)))
+                .verifyError(RequestValidationException.class);
+    }
+}
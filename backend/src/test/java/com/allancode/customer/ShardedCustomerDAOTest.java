@@ -0,0 +1,433 @@
+package com.allancode.customer;
+
+import com.allancode.AbstractTestContainersUnitTest;
+import com.allancode.datasource.DatabaseRoundTrips;
+import com.allancode.datasource.StatementCountingDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Shards are extra databases next to the test database, which doubles as the directory.
+ */
+class ShardedCustomerDAOTest extends AbstractTestContainersUnitTest {
+    private static final List<String> SHARDS = List.of("customer_shard_a", "customer_shard_b");
+
+    private final Map<String, DataSource> shardDataSources = new LinkedHashMap<>();
+    private ShardedCustomerDAO underTest;
+
+    @BeforeAll
+    static void createShards() {
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        CustomerDAOConfig.migrateEmailDirectory(jdbcTemplate.getDataSource());
+        for (String shard : SHARDS) {
+            jdbcTemplate.execute("DROP DATABASE IF EXISTS " + shard + " WITH (FORCE)");
+            jdbcTemplate.execute("CREATE DATABASE " + shard);
+            Flyway.configure().dataSource(shardUrl(shard), postgreSQLContainer.getUsername(),
+                    postgreSQLContainer.getPassword()).load().migrate();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        for (String shard : SHARDS) {
+            DataSource dataSource = DataSourceBuilder.create()
+                    .url(shardUrl(shard))
+                    .username(postgreSQLContainer.getUsername())
+                    .password(postgreSQLContainer.getPassword())
+                    .build();
+            new JdbcTemplate(dataSource).execute("TRUNCATE customer");
+            shardDataSources.put(shard, dataSource);
+        }
+        underTest = new ShardedCustomerDAO(getJdbcTemplate(), shardDataSources,
+                CustomerShardMap.of(64, SHARDS, List.of()), new CustomerRowMapper());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        underTest.close();
+    }
+
+    @Test
+    void itShouldStoreEachCustomerOnTheShardOwningItsId() {
+        //Given
+        for (int i = 0; i < 20; i++) {
+            underTest.insertCustomer(newCustomer());
+        }
+
+        //When
+        List<Customer> customers = underTest.selectAllCustomers();
+
+        //Then
+        assertThat(customers).hasSize(20).isSortedAccordingTo(Comparator.comparing(Customer::getId));
+        for (Customer customer : customers) {
+            assertThat(shardIds(underTest.shardMap().owner(customer.getId()))).contains(customer.getId());
+            assertThat(underTest.selectCustomerById(customer.getId())).contains(customer);
+        }
+        assertThat(shardIds(SHARDS.get(0))).isNotEmpty();
+        assertThat(shardIds(SHARDS.get(1))).isNotEmpty();
+    }
+
+    @Test
+    void itShouldKeepEmailsUniqueAcrossShards() {
+        //Given
+        Customer customer = newCustomer();
+        Optional<Integer> id = underTest.insertCustomerIfEmailAbsent(customer);
+
+        //When
+        Optional<Integer> again = underTest.insertCustomerIfEmailAbsent(
+                new Customer("other", customer.getEmail(), 30));
+
+        //Then
+        assertThat(id).isPresent();
+        assertThat(again).isEmpty();
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        assertThat(underTest.selectExistingEmails(List.of(customer.getEmail(), "absent-" + UUID.randomUUID())))
+                .containsExactly(customer.getEmail());
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("other", customer.getEmail(), 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+    }
+
+    @Test
+    void itShouldInsertCustomersWithFreeEmailsAndSkipTakenOnes() {
+        //Given
+        Customer taken = newCustomer();
+        underTest.insertCustomer(taken);
+        Customer free = newCustomer();
+
+        //When
+        Set<String> inserted = underTest.insertCustomersIfEmailAbsent(List.of(
+                new Customer("other", taken.getEmail(), 40), free));
+
+        //Then
+        assertThat(inserted).containsExactly(free.getEmail());
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getEmail)
+                .containsExactlyInAnyOrder(taken.getEmail(), free.getEmail());
+    }
+
+    @Test
+    void itShouldMergePagesAndStreamsInIdOrder() {
+        //Given
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            customers.add(newCustomer());
+        }
+        underTest.insertCustomers(customers);
+        List<Customer> all = underTest.selectAllCustomers();
+
+        //When
+        List<Customer> firstPage = underTest.selectCustomerPage(0, 10);
+        List<Customer> secondPage = underTest.selectCustomerPage(firstPage.get(9).getId(), 10);
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamCustomers(0, streamed::add);
+
+        //Then
+        assertThat(all).hasSize(50);
+        assertThat(firstPage).containsExactlyElementsOf(all.subList(0, 10));
+        assertThat(secondPage).containsExactlyElementsOf(all.subList(10, 20));
+        assertThat(streamed).containsExactlyElementsOf(all);
+    }
+
+    @Test
+    void itShouldMoveEmailClaimWhenEmailIsUpdated() {
+        //Given
+        Customer customer = newCustomer();
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+        Customer other = newCustomer();
+        underTest.insertCustomer(other);
+        String newEmail = "new-" + UUID.randomUUID();
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(new Customer(id, null, newEmail, null));
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.UPDATED);
+        assertThat(underTest.selectCustomerById(id)).map(Customer::getEmail).contains(newEmail);
+        assertThat(underTest.existsCustomerWithEmail(newEmail)).isTrue();
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isFalse();
+        assertThat(underTest.updateCustomer(new Customer(id, null, other.getEmail(), null)))
+                .isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(underTest.updateCustomer(new Customer(-1, null, "missing-" + UUID.randomUUID(), null)))
+                .isEqualTo(CustomerUpdateOutcome.NOT_FOUND);
+        assertThat(underTest.selectExistingEmails(List.of(newEmail, other.getEmail()))).hasSize(2);
+    }
+
+    @Test
+    void itShouldKeepTheOldClaimWhenTheEmailIsNotUpdated() {
+        //Given
+        // both on one shard, whose UNIQUE(email) then finds the email taken
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 63, SHARDS.get(0), null))));
+        Customer customer = newCustomer();
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+        Customer other = newCustomer();
+        Integer otherId = underTest.insertCustomerIfEmailAbsent(other).orElseThrow();
+        // a claim the directory lost, so only the shard finds the email taken
+        getJdbcTemplate().update("DELETE FROM customer_email_directory WHERE customer_id = ?", otherId);
+
+        //When
+        CustomerUpdateOutcome outcome = underTest.updateCustomer(new Customer(id, null, other.getEmail(), null));
+
+        //Then
+        assertThat(outcome).isEqualTo(CustomerUpdateOutcome.EMAIL_TAKEN);
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        assertThat(underTest.existsCustomerWithEmail(other.getEmail())).isFalse();
+    }
+
+    @Test
+    void itShouldReleaseTheNewClaimWhenTheUpdateFails() throws Exception {
+        //Given
+        Customer customer = newCustomer();
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+        String newEmail = "new-" + UUID.randomUUID();
+        Map<String, DataSource> unreachable = new LinkedHashMap<>();
+        for (String shard : SHARDS) {
+            unreachable.put(shard, DataSourceBuilder.create()
+                    .url(shardUrl("missing_" + shard))
+                    .username(postgreSQLContainer.getUsername())
+                    .password(postgreSQLContainer.getPassword())
+                    .build());
+        }
+
+        try (ShardedCustomerDAO failing = new ShardedCustomerDAO(getJdbcTemplate(), unreachable,
+                CustomerShardMap.of(64, SHARDS, List.of()), new CustomerRowMapper())) {
+            //When
+            assertThatThrownBy(() -> failing.updateCustomer(new Customer(id, null, newEmail, null)))
+                    .isInstanceOf(RuntimeException.class);
+
+            //Then
+            assertThat(underTest.existsCustomerWithEmail(newEmail)).isFalse();
+            assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isTrue();
+        }
+    }
+
+    @Test
+    void itShouldClaimTheEmailsOfCustomersAlreadyOnTheShards() {
+        //Given
+        underTest.insertCustomer(newCustomer());
+        Integer id = getJdbcTemplate().queryForObject("SELECT nextval('customer_id_seq')", Integer.class);
+        Customer existing = new Customer(id, "existing", newCustomer().getEmail(), 40);
+        new JdbcTemplate(shardDataSources.get(underTest.shardMap().owner(id))).update(
+                "INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?)",
+                id, existing.getName(), existing.getEmail(), existing.getAge());
+
+        //When
+        long claimed = underTest.backfillEmailDirectory();
+
+        //Then
+        assertThat(claimed).isEqualTo(1);
+        assertThat(underTest.existsCustomerWithEmail(existing.getEmail())).isTrue();
+        assertThat(underTest.backfillEmailDirectory()).isZero();
+        assertThatThrownBy(() -> underTest.insertCustomer(new Customer("other", existing.getEmail(), 30)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void itShouldReleaseEmailWhenCustomerIsDeleted() {
+        //Given
+        Customer customer = newCustomer();
+        Integer id = underTest.insertCustomerIfEmailAbsent(customer).orElseThrow();
+
+        //When
+        underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(underTest.existsCustomerWithId(id)).isFalse();
+        assertThat(underTest.existsCustomerWithEmail(customer.getEmail())).isFalse();
+    }
+
+    @Test
+    void itShouldServeMovingBucketsFromEitherShardUntilMigrated() {
+        //Given
+        String a = SHARDS.get(0);
+        String b = SHARDS.get(1);
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 63, a, null))));
+        for (int i = 0; i < 30; i++) {
+            underTest.insertCustomer(newCustomer());
+        }
+        List<Customer> before = underTest.selectAllCustomers();
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 31, a, null),
+                new CustomerShardMap.BucketRange(32, 63, b, a))));
+        Customer moving = before.stream()
+                .filter(customer -> b.equals(underTest.shardMap().owner(customer.getId())))
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        Optional<Customer> beforeMigration = underTest.selectCustomerById(moving.getId());
+        long moved = underTest.migrate();
+
+        //Then
+        assertThat(beforeMigration).contains(moving);
+        assertThat(moved).isEqualTo(shardIds(b).size()).isPositive();
+        assertThat(shardIds(a)).hasSize(30 - (int) moved);
+        assertThat(underTest.shardMap().isMoving()).isFalse();
+        assertThat(underTest.selectAllCustomers()).containsExactlyElementsOf(before);
+    }
+
+    @Test
+    void itShouldReturnCustomersOnBothShardsOnceFromTheShardTheyMoveFrom() {
+        //Given
+        String a = SHARDS.get(0);
+        String b = SHARDS.get(1);
+        Customer moving = leaveCopyOfMovingCustomer(a, b);
+
+        //When
+        List<Customer> all = underTest.selectAllCustomers();
+        List<Customer> page = underTest.selectCustomerPage(0, 20);
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamCustomers(0, streamed::add);
+
+        //Then
+        assertThat(all).hasSize(20).doesNotHaveDuplicates().contains(moving);
+        assertThat(page).containsExactlyElementsOf(all);
+        assertThat(streamed).containsExactlyElementsOf(all);
+        assertThat(underTest.selectCustomerById(moving.getId())).contains(moving);
+    }
+
+    @Test
+    void itShouldReplaceCopiesLeftByAnInterruptedMigration() {
+        //Given
+        String a = SHARDS.get(0);
+        String b = SHARDS.get(1);
+        Customer moving = leaveCopyOfMovingCustomer(a, b);
+        List<Customer> before = underTest.selectAllCustomers();
+
+        //When
+        long moved = underTest.migrate();
+
+        //Then
+        assertThat(moved).isEqualTo(shardIds(b).size()).isPositive();
+        assertThat(shardIds(a)).doesNotContain(moving.getId()).hasSize(20 - (int) moved);
+        assertThat(underTest.selectCustomerById(moving.getId())).contains(moving);
+        assertThat(underTest.selectAllCustomers()).containsExactlyElementsOf(before);
+    }
+
+    @Test
+    void itShouldKeepWritesMadeWhileMigrating() throws Exception {
+        //Given
+        String a = SHARDS.get(0);
+        String b = SHARDS.get(1);
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 63, a, null))));
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            customers.add(newCustomer());
+        }
+        underTest.insertCustomers(customers);
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 31, a, null),
+                new CustomerShardMap.BucketRange(32, 63, b, a))));
+        List<Integer> moving = underTest.selectAllCustomers().stream()
+                .map(Customer::getId)
+                .filter(id -> b.equals(underTest.shardMap().owner(id)))
+                .toList();
+
+        //When
+        CompletableFuture<Long> migration = CompletableFuture.supplyAsync(underTest::migrate);
+        for (Integer id : moving) {
+            assertThat(underTest.updateCustomer(new Customer(id, null, null, 99)))
+                    .isEqualTo(CustomerUpdateOutcome.UPDATED);
+        }
+        migration.get(1, TimeUnit.MINUTES);
+
+        //Then
+        assertThat(shardIds(b)).containsExactlyInAnyOrderElementsOf(moving);
+        assertThat(underTest.selectAllCustomers()).hasSize(3000)
+                .filteredOn(customer -> moving.contains(customer.getId()))
+                .extracting(Customer::getAge)
+                .containsOnly(99);
+    }
+
+    @Test
+    void itShouldKeepTheEmailDirectoryOutOfTheShards() {
+        //When
+        Boolean directory = new JdbcTemplate(shardDataSources.get(SHARDS.get(0))).queryForObject(
+                "SELECT to_regclass('customer_email_directory') IS NOT NULL", Boolean.class);
+
+        //Then
+        assertThat(directory).isFalse();
+    }
+
+    @Test
+    void itShouldRecordShardStatementsInTheCallersScope() throws Exception {
+        //Given
+        for (int i = 0; i < 20; i++) {
+            underTest.insertCustomer(newCustomer());
+        }
+        Map<String, DataSource> counting = new LinkedHashMap<>();
+        shardDataSources.forEach((shard, dataSource) -> counting.put(shard, new StatementCountingDataSource(dataSource)));
+
+        try (ShardedCustomerDAO counted = new ShardedCustomerDAO(getJdbcTemplate(), counting,
+                CustomerShardMap.of(64, SHARDS, List.of()), new CustomerRowMapper())) {
+            //When
+            DatabaseRoundTrips.Usage usage = DatabaseRoundTrips.measure(counted::selectAllCustomers);
+
+            //Then
+            assertThat(usage.statements()).isGreaterThanOrEqualTo(SHARDS.size());
+        }
+    }
+
+    /**
+     * Twenty customers on a, with the buckets from 32 moving to b and one of their customers already on
+     * b as an outdated copy, as an interrupted migration leaves them.
+     */
+    private Customer leaveCopyOfMovingCustomer(String a, String b) {
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 63, a, null))));
+        for (int i = 0; i < 20; i++) {
+            underTest.insertCustomer(newCustomer());
+        }
+        underTest.reshard(CustomerShardMap.of(64, SHARDS, List.of(
+                new CustomerShardMap.BucketRange(0, 31, a, null),
+                new CustomerShardMap.BucketRange(32, 63, b, a))));
+        Customer moving = underTest.selectAllCustomers().stream()
+                .filter(customer -> b.equals(underTest.shardMap().owner(customer.getId())))
+                .findFirst()
+                .orElseThrow();
+        new JdbcTemplate(shardDataSources.get(b)).update(
+                "INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?)",
+                moving.getId(), "outdated", moving.getEmail(), moving.getAge() + 1);
+        return moving;
+    }
+
+    private List<Integer> shardIds(String shard) {
+        return new JdbcTemplate(shardDataSources.get(shard)).queryForList("SELECT id FROM customer", Integer.class);
+    }
+
+    private static Customer newCustomer() {
+        return new Customer(
+                FAKER.name().fullName(),
+                FAKER.internet().safeEmailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+    }
+
+    private static String shardUrl(String shard) {
+        return postgreSQLContainer.getJdbcUrl()
+                .replace("/" + postgreSQLContainer.getDatabaseName(), "/" + shard);
+    }
+}
@@ -0,0 +1,132 @@
+package com.allancode.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DatabaseRoundTripsFilterTest {
+    private static final String URI = "/api/v1/customers/{customerId}";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void itShouldRecordStatementsAndTimePerRequest() throws Exception {
+        //Given
+        DatabaseRoundTripsFilter underTest = new DatabaseRoundTripsFilter(meterRegistry, budget(2, false));
+
+        //When
+        underTest.doFilter(request(), new MockHttpServletResponse(), statements(2));
+
+        //Then
+        assertThat(meterRegistry.get(DatabaseRoundTripsFilter.ROUND_TRIPS_NAME).tag("uri", URI)
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get(DatabaseRoundTripsFilter.TIME_NAME).tag("uri", URI)
+                .timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(2);
+        assertThat(meterRegistry.find(DatabaseRoundTripsFilter.VIOLATIONS_NAME).counter()).isNull();
+    }
+
+    @Test
+    void itShouldRecordEveryRequestOfARouteInTheSameMeters() throws Exception {
+        //Given
+        DatabaseRoundTripsFilter underTest = new DatabaseRoundTripsFilter(meterRegistry, budget(2, false));
+        underTest.doFilter(request(), new MockHttpServletResponse(), statements(1));
+        int meters = meterRegistry.getMeters().size();
+
+        //When
+        underTest.doFilter(request(), new MockHttpServletResponse(), statements(2));
+
+        //Then
+        assertThat(meterRegistry.getMeters()).hasSize(meters);
+        assertThat(meterRegistry.get(DatabaseRoundTripsFilter.ROUND_TRIPS_NAME).tag("uri", URI)
+                .summary().count()).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldRecordStatementsRunOnOtherThreadsWithThePropagatedScope() throws Exception {
+        //Given
+        DatabaseRoundTripsFilter underTest = new DatabaseRoundTripsFilter(meterRegistry, budget(2, false));
+        FilterChain fanOut = (request, response) -> {
+            try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+                CompletableFuture.allOf(
+                        CompletableFuture.supplyAsync(DatabaseRoundTrips.propagate(this::select), executor),
+                        CompletableFuture.supplyAsync(DatabaseRoundTrips.propagate(this::select), executor),
+                        // not propagated, so not recorded
+                        CompletableFuture.supplyAsync(this::select, executor)
+                ).join();
+            }
+        };
+
+        //When
+        underTest.doFilter(request(), new MockHttpServletResponse(), fanOut);
+
+        //Then
+        assertThat(meterRegistry.get(DatabaseRoundTripsFilter.ROUND_TRIPS_NAME).tag("uri", URI)
+                .summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldCountRequestsOverBudget() throws Exception {
+        //Given
+        DatabaseRoundTripsFilter underTest = new DatabaseRoundTripsFilter(meterRegistry, budget(1, false));
+
+        //When
+        underTest.doFilter(request(), new MockHttpServletResponse(), statements(2));
+
+        //Then
+        assertThat(meterRegistry.get(DatabaseRoundTripsFilter.VIOLATIONS_NAME).tag("uri", URI)
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void itShouldFailRequestsOverBudgetInTestMode() {
+        //Given
+        DatabaseRoundTripsFilter underTest = new DatabaseRoundTripsFilter(meterRegistry, budget(1, true));
+
+        //When
+        //Then
+        assertThatThrownBy(() -> underTest.doFilter(request(), new MockHttpServletResponse(), statements(2)))
+                .isInstanceOf(StatementBudgetExceededException.class)
+                .hasMessageContaining("GET " + URI + " sent 2 statements")
+                .hasMessageContaining("SELECT 1");
+    }
+
+    private static StatementBudgetProperties budget(int statements, boolean failOnViolation) {
+        return new StatementBudgetProperties(true, failOnViolation,
+                Map.of("GET " + URI, new StatementBudgetProperties.Budget(statements, Duration.ofSeconds(1))),
+                new StatementBudgetProperties.Budget(0, null));
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/customers/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, URI);
+        return request;
+    }
+
+    // stands in for the StatementCountingDataSource, each statement takes a millisecond
+    private static FilterChain statements(int count) {
+        return (request, response) -> {
+            for (int i = 0; i < count; i++) {
+                DatabaseRoundTrips.record("SELECT 1", Duration.ofMillis(1).toNanos());
+            }
+        };
+    }
+
+    private Void select() {
+        DatabaseRoundTrips.record("SELECT 1", Duration.ofMillis(1).toNanos());
+        return null;
+    }
+}
@@ -0,0 +1,56 @@
+package com.allancode.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HikariPoolSizingPostProcessorTest {
+
+    @Test
+    void itShouldSizeFixedPoolFromCoresAndSpindles() {
+        //Given
+        HikariPoolSizingPostProcessor underTest = new HikariPoolSizingPostProcessor(
+                new MockEnvironment(), new DataSourcePoolProperties(1, 0), 8);
+        HikariDataSource dataSource = new HikariDataSource();
+
+        //When
+        underTest.postProcessAfterInitialization(dataSource, "dataSource");
+
+        //Then
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(17);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(17);
+    }
+
+    @Test
+    void itShouldCapPoolSizeAtExpectedConcurrency() {
+        //Given
+        HikariPoolSizingPostProcessor underTest = new HikariPoolSizingPostProcessor(
+                new MockEnvironment(), new DataSourcePoolProperties(1, 10), 8);
+        HikariDataSource dataSource = new HikariDataSource();
+
+        //When
+        underTest.postProcessAfterInitialization(dataSource, "dataSource");
+
+        //Then
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(10);
+    }
+
+    @Test
+    void itShouldKeepExplicitlyConfiguredPoolSize() {
+        //Given
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty(HikariPoolSizingPostProcessor.MAXIMUM_POOL_SIZE, "5");
+        HikariPoolSizingPostProcessor underTest = new HikariPoolSizingPostProcessor(
+                environment, new DataSourcePoolProperties(1, 0), 8);
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(5);
+
+        //When
+        underTest.postProcessAfterInitialization(dataSource, "dataSource");
+
+        //Then
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,138 @@
+package com.allancode.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replicaOne = mock(DataSource.class);
+    private final DataSource replicaTwo = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replicaOneConnection = mock(Connection.class);
+    private final Connection replicaTwoConnection = mock(Connection.class);
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replicaOne.getConnection()).thenReturn(replicaOneConnection);
+        when(replicaTwo.getConnection()).thenReturn(replicaTwoConnection);
+        when(replicaOneConnection.isValid(1)).thenReturn(true);
+        when(replicaTwoConnection.isValid(1)).thenReturn(true);
+        underTest = new ReplicaRoutingDataSource(primary, List.of(replicaOne, replicaTwo));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReadYourWrites.end();
+        underTest.close();
+    }
+
+    @Test
+    void itShouldBalanceReadOnlyConnectionsOverReplicas() throws SQLException {
+        //When
+        Connection first = underTest.getConnection();
+        Connection second = underTest.getConnection();
+        Connection third = underTest.getConnection();
+
+        //Then
+        assertThat(List.of(first, second, third))
+                .containsExactly(replicaOneConnection, replicaTwoConnection, replicaOneConnection);
+    }
+
+    @Test
+    void itShouldSendWritesToPrimary() throws SQLException {
+        //Given
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void itShouldSkipReplicaThatFailsToConnectUntilHealthCheckPasses() throws SQLException {
+        //Given
+        when(replicaOne.getConnection())
+                .thenThrow(new SQLException("connection refused"))
+                .thenReturn(replicaOneConnection);
+
+        //When
+        Connection first = underTest.getConnection();
+        Connection second = underTest.getConnection();
+
+        //Then
+        assertThat(first).isSameAs(replicaTwoConnection);
+        assertThat(second).isSameAs(replicaTwoConnection);
+        assertThat(underTest.healthyReplicas()).isEqualTo(1);
+
+        //When
+        underTest.checkHealth();
+
+        //Then
+        assertThat(underTest.healthyReplicas()).isEqualTo(2);
+    }
+
+    @Test
+    void itShouldFallBackToPrimaryWhenNoReplicaIsHealthy() throws SQLException {
+        //Given
+        when(replicaOneConnection.isValid(1)).thenReturn(false);
+        when(replicaTwo.getConnection()).thenThrow(new SQLException("connection refused"));
+        underTest.checkHealth();
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(underTest.healthyReplicas()).isZero();
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void itShouldReadFromPrimaryAfterWriteInSameScope() throws SQLException {
+        //Given
+        AtomicInteger firstWrites = new AtomicInteger();
+        ReadYourWrites.begin(false, firstWrites::incrementAndGet);
+        Connection before = underTest.getConnection();
+
+        //When
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        underTest.getConnection();
+        underTest.getConnection();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection after = underTest.getConnection();
+
+        //Then
+        assertThat(before).isSameAs(replicaOneConnection);
+        assertThat(after).isSameAs(primaryConnection);
+        assertThat(firstWrites).hasValue(1);
+    }
+
+    @Test
+    void itShouldReadFromPrimaryWhenScopeIsPinned() throws SQLException {
+        //Given
+        ReadYourWrites.begin(true, null);
+
+        //When
+        Connection actual = underTest.getConnection();
+
+        //Then
+        assertThat(actual).isSameAs(primaryConnection);
+    }
+}
@@ -0,0 +1,56 @@
+package com.allancode.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProblemExceptionTest {
+
+    @Test
+    void itShouldNotCaptureAStackTrace() {
+        //Given
+        ResourceNotFoundException exception = new ResourceNotFoundException("customer with id does not exist");
+
+        //When
+        exception.addSuppressed(new IllegalStateException());
+
+        //Then
+        assertThat(exception.getStackTrace()).isEmpty();
+        assertThat(exception.getSuppressed()).isEmpty();
+        assertThat(exception.getMessage()).isEqualTo("customer with id does not exist");
+    }
+
+    @Test
+    void itShouldRenderAnEscapedProblemBody() {
+        //Given
+        DuplicateResourceException exception = new DuplicateResourceException("email \"a\\b\" already taken\n");
+
+        //When
+        String problem = new String(exception.problem(), StandardCharsets.UTF_8);
+
+        //Then
+        assertThat(problem).isEqualTo("""
+                {"type":"about:blank","title":"Conflict","status":409,\
+                "detail":"email \\"a\\\\b\\" already taken\\u000a"}""");
+    }
+
+    @Test
+    void itShouldAnswerWithThePrebuiltBody() {
+        //Given
+        ProblemExceptionHandler underTest = new ProblemExceptionHandler();
+        RequestValidationException exception = new RequestValidationException("invalid page cursor");
+
+        //When
+        ResponseEntity<byte[]> response = underTest.handleProblem(exception);
+
+        //Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_PROBLEM_JSON);
+        assertThat(response.getBody()).isSameAs(exception.problem());
+    }
+}
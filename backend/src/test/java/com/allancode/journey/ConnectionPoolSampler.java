@@ -0,0 +1,142 @@
+package com.allancode.journey;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Reads the application's Hikari meters from /actuator/metrics over a measured window: the mean
+ * connection acquire and usage times from the change in the timers' count and total, and the threads
+ * waiting for a connection, sampled every {@link #SAMPLE_INTERVAL}. A meter the application does not
+ * have, or a timer that saw no connections, as in the reactive mode, reads as NaN.
+ */
+final class ConnectionPoolSampler {
+    private static final Duration SAMPLE_INTERVAL = Duration.ofMillis(250);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String metricsUri;
+
+    ConnectionPoolSampler(HttpClient httpClient, ObjectMapper objectMapper, String metricsUri) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.metricsUri = metricsUri;
+    }
+
+    /**
+     * Starts sampling after {@code delay}, the load's warmup, until {@link Sampling#stop}.
+     */
+    Sampling start(Duration delay) {
+        Sampling sampling = new Sampling(delay);
+        sampling.thread = Thread.ofVirtual().name("pool-sampler").start(sampling::run);
+        return sampling;
+    }
+
+    /**
+     * @param acquireMs   mean time to get a connection from the pool
+     * @param usageMs     mean time a connection was held
+     * @param pendingMean mean threads waiting for a connection
+     */
+    record PoolUsage(double acquireMs, double usageMs, double pendingMean, double pendingMax) {
+
+        // waiting for a connection took longer than using one
+        boolean acquireDominates() {
+            return acquireMs > usageMs;
+        }
+    }
+
+    final class Sampling {
+        private final Duration delay;
+        private Thread thread;
+        private volatile boolean stopped;
+        private Timers before;
+        private double pendingSum;
+        private double pendingMax = Double.NaN;
+        private int samples;
+
+        private Sampling(Duration delay) {
+            this.delay = delay;
+        }
+
+        PoolUsage stop() throws InterruptedException {
+            stopped = true;
+            thread.interrupt();
+            thread.join();
+            Timers after = timers();
+            return new PoolUsage(
+                    before.acquire().meanMsSince(after.acquire()),
+                    before.usage().meanMsSince(after.usage()),
+                    samples == 0 ? Double.NaN : pendingSum / samples,
+                    pendingMax);
+        }
+
+        private void run() {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // stopped within the warmup, measures from here
+            }
+            before = timers();
+            while (!stopped) {
+                double pending = value("hikaricp.connections.pending", "VALUE");
+                if (!Double.isNaN(pending)) {
+                    pendingSum += pending;
+                    pendingMax = Double.isNaN(pendingMax) ? pending : Math.max(pendingMax, pending);
+                    samples++;
+                }
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private record Timer(double count, double totalSeconds) {
+
+        double meanMsSince(Timer after) {
+            double count = after.count - this.count;
+            return count > 0 ? (after.totalSeconds - totalSeconds) * 1000 / count : Double.NaN;
+        }
+    }
+
+    private record Timers(Timer acquire, Timer usage) {
+    }
+
+    private Timers timers() {
+        return new Timers(timer("hikaricp.connections.acquire"), timer("hikaricp.connections.usage"));
+    }
+
+    private Timer timer(String name) {
+        return new Timer(value(name, "COUNT"), value(name, "TOTAL_TIME"));
+    }
+
+    private double value(String name, String statistic) {
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(metricsUri + name)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+            return Double.NaN;
+        } catch (IOException e) {
+            return Double.NaN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.allancode.journey;
+
+import com.allancode.customer.Customer;
+import com.allancode.customer.CustomerRegistrationRequest;
+import com.allancode.customer.CustomerUpdateRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives a weighted mix of the customer routes at a fixed arrival rate against the application the
+ * load-test profile starts, see the pom. Writes per route percentiles to target/load-test and fails
+ * on errors, on a p99 above load.p99Limit, or on a p99 that regressed past load.threshold percent
+ * of the one in load.baseline. Given load.rates instead, it sweeps them for the highest rate served
+ * within load.sloP99, next to the connection pool's acquire and usage times.
+ */
+class CustomerLoadIT {
+    private static final String CUSTOMER_URI = "/api/v1/customers";
+    private static final int SEED_BATCH_SIZE = 1000;
+    // p99 changes smaller than this are noise on a local machine
+    private static final double P99_NOISE_MS = 1;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final String serverUri = "http://localhost:" + System.getProperty("test.server.port", "8080");
+    private final String baseUri = serverUri + CUSTOMER_URI;
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReference<String> lastBatchEmail = new AtomicReference<>();
+
+    @Test
+    @DisabledIfSystemProperty(named = "load.rates", matches = ".+")
+    void itShouldKeepLatencyWithinBudget() throws Exception {
+        //Given
+        double rate = Double.parseDouble(System.getProperty("load.rate", "100"));
+        Duration warmup = Duration.parse("PT" + System.getProperty("load.warmup", "10s"));
+        Duration duration = Duration.parse("PT" + System.getProperty("load.duration", "30s"));
+        LoadGenerator loadGenerator = loadGenerator(rate * (warmup.toSeconds() + duration.toSeconds()));
+
+        //When
+        Map<String, LoadGenerator.RouteResult> results = loadGenerator.run(rate, warmup, duration, timeout());
+
+        //Then
+        Path directory = Path.of(System.getProperty("load.output", "target/load-test"));
+        ObjectNode report = report(results, directory);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(directory.resolve("customer-load.json").toFile(), report);
+
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.maxErrorRate", "0.01"));
+        double p99Limit = Double.parseDouble(System.getProperty("load.p99Limit", "0"));
+        String baseline = System.getProperty("load.baseline", "");
+        JsonNode before = baseline.isBlank() ? null : objectMapper.readTree(Path.of(baseline).toFile()).path("routes");
+        double threshold = Double.parseDouble(System.getProperty("load.threshold", "20"));
+        List<String> failures = new ArrayList<>();
+        report.path("routes").fields().forEachRemaining(entry -> {
+            String route = entry.getKey();
+            JsonNode now = entry.getValue();
+            if (now.path("count").asLong() > 0
+                    && (double) now.path("errors").asLong() / now.path("count").asLong() > maxErrorRate) {
+                failures.add("%s: %d of %d requests failed".formatted(
+                        route, now.path("errors").asLong(), now.path("count").asLong()));
+            }
+            double p99 = now.path("p99Ms").asDouble();
+            if (p99Limit > 0 && p99 > p99Limit) {
+                failures.add("%s: p99 %.2f ms above the %.2f ms limit".formatted(route, p99, p99Limit));
+            }
+            if (before != null && before.has(route)) {
+                double baselineP99 = before.path(route).path("p99Ms").asDouble();
+                if (p99 > baselineP99 * (1 + threshold / 100) && p99 - baselineP99 > P99_NOISE_MS) {
+                    failures.add("%s: p99 %.2f ms regressed from %.2f ms, more than %.0f%%".formatted(
+                            route, p99, baselineP99, threshold));
+                }
+            }
+        });
+        assertThat(failures).isEmpty();
+    }
+
+    /**
+     * Runs the mix at each of load.rates in turn, lowest first, and stops after the first rate the
+     * application does not sustain: a p99 over all routes above load.sloP99 ms or more errors than
+     * load.maxErrorRate. Each step also reads the Hikari meters over its measured window, and the
+     * sweep reports the first rate at which waiting for a connection took longer on average than
+     * using one, where the pool rather than the database sets the latency. Writes the steps to
+     * customer-load-sweep.json.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "load.rates", matches = ".+")
+    void itShouldFindTheHighestSustainedRate() throws Exception {
+        //Given
+        List<Double> rates = Arrays.stream(System.getProperty("load.rates").split(","))
+                .map(rate -> Double.parseDouble(rate.trim()))
+                .sorted()
+                .toList();
+        Duration warmup = Duration.parse("PT" + System.getProperty("load.warmup", "10s"));
+        Duration duration = Duration.parse("PT" + System.getProperty("load.duration", "30s"));
+        double sloP99 = Double.parseDouble(System.getProperty("load.sloP99", "100"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.maxErrorRate", "0.01"));
+        LoadGenerator loadGenerator = loadGenerator(rates.stream().mapToDouble(Double::doubleValue).sum()
+                * (warmup.toSeconds() + duration.toSeconds()));
+        ConnectionPoolSampler poolSampler = new ConnectionPoolSampler(
+                httpClient, objectMapper, serverUri + "/actuator/metrics/");
+
+        //When
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("mix", System.getProperty("load.mix", "get=45,list=20,register=10,batch=5,update=15,delete=5"));
+        report.put("idSkew", System.getProperty("load.idSkew", "1"));
+        report.put("sloP99Ms", sloP99);
+        ArrayNode steps = report.putArray("steps");
+        double highestSustained = 0;
+        Double acquireDominatesFrom = null;
+        System.out.printf("%n%-8s %10s %8s %7s %9s %9s %9s %10s %9s %11s  %s%n", "rate", "throughput", "count",
+                "errors", "p50 ms", "p99 ms", "max ms", "acquire ms", "usage ms", "max pending", "sustained");
+        for (double rate : rates) {
+            ConnectionPoolSampler.Sampling sampling = poolSampler.start(warmup);
+            Map<String, LoadGenerator.RouteResult> results = loadGenerator.run(rate, warmup, duration, timeout());
+            ConnectionPoolSampler.PoolUsage pool = sampling.stop();
+            if (acquireDominatesFrom == null && pool.acquireDominates()) {
+                acquireDominatesFrom = rate;
+            }
+            Histogram latencies = new Histogram(3);
+            long errors = 0;
+            for (LoadGenerator.RouteResult result : results.values()) {
+                latencies.add(result.latencies());
+                errors += result.errors().sum();
+            }
+            long count = latencies.getTotalCount();
+            boolean sustained = count > 0 && millis(latencies, 99) <= sloP99
+                    && (double) errors / count <= maxErrorRate;
+            ObjectNode step = steps.addObject();
+            step.put("rate", rate);
+            // requests answered per second of the measured window, below rate once the backlog grows
+            step.put("throughput", count / (double) duration.toSeconds());
+            step.put("count", count);
+            step.put("errors", errors);
+            step.put("p50Ms", millis(latencies, 50));
+            step.put("p99Ms", millis(latencies, 99));
+            step.put("maxMs", latencies.getMaxValue() / 1000.0);
+            step.put("sustained", sustained);
+            // means over the measured window, NaN when the application has no Hikari pool in use
+            step.put("hikariAcquireMs", pool.acquireMs());
+            step.put("hikariUsageMs", pool.usageMs());
+            step.put("hikariPendingMean", pool.pendingMean());
+            step.put("hikariPendingMax", pool.pendingMax());
+            ObjectNode routes = step.putObject("routeP99Ms");
+            results.forEach((route, result) -> routes.put(route, millis(result.latencies(), 99)));
+            System.out.printf("%-8.0f %10.1f %8d %7d %9.2f %9.2f %9.2f %10.2f %9.2f %11.0f  %s%n", rate,
+                    count / (double) duration.toSeconds(), count, errors, millis(latencies, 50), millis(latencies, 99),
+                    latencies.getMaxValue() / 1000.0, pool.acquireMs(), pool.usageMs(), pool.pendingMax(),
+                    sustained ? "yes" : "no");
+            if (!sustained) {
+                break;
+            }
+            highestSustained = rate;
+        }
+        report.put("highestSustainedRate", highestSustained);
+        System.out.printf("highest sustained rate %.0f/s at p99 <= %.0f ms%n", highestSustained, sloP99);
+        if (acquireDominatesFrom != null) {
+            report.put("acquireDominatesFromRate", acquireDominatesFrom);
+            System.out.printf("connection acquire exceeds connection usage from %.0f/s%n", acquireDominatesFrom);
+        } else {
+            System.out.println("connection acquire stays below connection usage");
+        }
+
+        //Then
+        Path directory = Path.of(System.getProperty("load.output", "target/load-test"));
+        Files.createDirectories(directory);
+        objectMapper.writerWithDefaultPrettyPrinter()
+                .writeValue(directory.resolve("customer-load-sweep.json").toFile(), report);
+        // a sweep that fails its first rate started too high to find anything
+        assertThat(highestSustained).as("sustained rate").isPositive();
+    }
+
+    /**
+     * Seeds load.customers customers for the reads and updates, and as many again as the deletes among
+     * {@code requests} requests of the mix will use, with a margin.
+     */
+    private LoadGenerator loadGenerator(double requests) throws IOException, InterruptedException {
+        Map<String, Integer> mix = mix(System.getProperty("load.mix", "get=45,list=20,register=10,batch=5,update=15,delete=5"));
+        int deletes = (int) Math.ceil(requests
+                * mix.getOrDefault("delete", 0) / mix.values().stream().mapToInt(Integer::intValue).sum() * 1.2);
+        List<Integer> ids = seed(Integer.getInteger("load.customers", 1000) + deletes);
+        List<Integer> stable = ids.subList(deletes, ids.size());
+        ConcurrentLinkedQueue<Integer> disposable = new ConcurrentLinkedQueue<>(ids.subList(0, deletes));
+        return new LoadGenerator(httpClient, routes(mix, stable, disposable), 42);
+    }
+
+    private static Duration timeout() {
+        return Duration.parse("PT" + System.getProperty("load.timeout", "10s"));
+    }
+
+    private List<LoadGenerator.Route> routes(Map<String, Integer> mix,
+                                             List<Integer> stable,
+                                             ConcurrentLinkedQueue<Integer> disposable) {
+        int pageSize = Integer.getInteger("load.pageSize", 20);
+        int batchSize = Integer.getInteger("load.batchSize", 50);
+        double idSkew = Double.parseDouble(System.getProperty("load.idSkew", "1"));
+        List<LoadGenerator.Route> routes = new ArrayList<>();
+        mix.forEach((name, weight) -> routes.add(new LoadGenerator.Route(name, weight, switch (name) {
+            case "get" -> () -> get("/" + randomOf(stable, idSkew));
+            case "list" -> () -> get("?size=" + pageSize);
+            case "register" -> () -> post("", new CustomerRegistrationRequest(
+                    "load " + runId, nextEmail(), ThreadLocalRandom.current().nextInt(18, 99)));
+            case "batch" -> () -> post("/batch", batch(batchSize));
+            case "update" -> () -> HttpRequest.newBuilder(URI.create(baseUri + "/update/" + randomOf(stable, idSkew)))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(json(
+                            new CustomerUpdateRequest("load " + runId + " " + sequence.incrementAndGet(), null, null))))
+                    .build();
+            case "delete" -> () -> {
+                Integer id = disposable.poll();
+                // the seed covers the expected deletes with a margin, past it deletes 404 and count as errors
+                return HttpRequest.newBuilder(URI.create(baseUri + "/delete/" + (id != null ? id : -1)))
+                        .DELETE()
+                        .build();
+            };
+            default -> throw new IllegalArgumentException(
+                    "unknown route " + name + ", expected get, list, register, batch, update or delete");
+        })));
+        return routes;
+    }
+
+    /**
+     * New customers, the last of which reuses the email of the previous batch's first, so every
+     * batch also reports a duplicate found at insert time.
+     */
+    private List<CustomerRegistrationRequest> batch(int size) {
+        List<CustomerRegistrationRequest> batch = new ArrayList<>(size);
+        for (int i = 0; i < size - 1; i++) {
+            batch.add(new CustomerRegistrationRequest("load " + runId, nextEmail(), 30));
+        }
+        String taken = lastBatchEmail.getAndSet(batch.isEmpty() ? null : batch.get(0).email());
+        batch.add(new CustomerRegistrationRequest("load " + runId, taken != null ? taken : nextEmail(), 30));
+        return batch;
+    }
+
+    /**
+     * Registers the customers through the batch route and reads their ids back from the export.
+     */
+    private List<Integer> seed(int count) throws IOException, InterruptedException {
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            List<CustomerRegistrationRequest> batch = new ArrayList<>();
+            for (int i = from; i < Math.min(count, from + SEED_BATCH_SIZE); i++) {
+                batch.add(new CustomerRegistrationRequest("load " + runId, nextEmail(), 30));
+            }
+            HttpResponse<String> response = httpClient.send(post("/batch", batch), HttpResponse.BodyHandlers.ofString());
+            assertThat(response.statusCode()).as(response.body()).isEqualTo(200);
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        HttpRequest exportRequest = HttpRequest.newBuilder(URI.create(baseUri + "/export"))
+                .header("Accept", "application/x-ndjson")
+                .build();
+        HttpResponse<InputStream> export = httpClient.send(exportRequest, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(export.statusCode()).isEqualTo(200);
+        try (MappingIterator<Customer> customers = objectMapper.readerFor(Customer.class).readValues(export.body())) {
+            while (customers.hasNext()) {
+                Customer customer = customers.next();
+                if (customer.getEmail().startsWith("load-" + runId + "-")) {
+                    ids.add(customer.getId());
+                }
+            }
+        }
+        assertThat(ids).hasSize(count);
+        return ids;
+    }
+
+    private ObjectNode report(Map<String, LoadGenerator.RouteResult> results, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("rate", System.getProperty("load.rate", "100"));
+        report.put("mix", System.getProperty("load.mix", "get=45,list=20,register=10,batch=5,update=15,delete=5"));
+        report.put("idSkew", System.getProperty("load.idSkew", "1"));
+        ObjectNode routes = report.putObject("routes");
+        System.out.printf("%n%-10s %8s %7s %9s %9s %9s %9s %9s%n",
+                "route", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, LoadGenerator.RouteResult> entry : results.entrySet()) {
+            Histogram latencies = entry.getValue().latencies();
+            long errors = entry.getValue().errors().sum();
+            ObjectNode route = routes.putObject(entry.getKey());
+            route.put("count", latencies.getTotalCount());
+            route.put("errors", errors);
+            route.put("p50Ms", millis(latencies, 50));
+            route.put("p90Ms", millis(latencies, 90));
+            route.put("p99Ms", millis(latencies, 99));
+            route.put("p999Ms", millis(latencies, 99.9));
+            route.put("maxMs", latencies.getMaxValue() / 1000.0);
+            System.out.printf("%-10s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(),
+                    latencies.getTotalCount(), errors, millis(latencies, 50), millis(latencies, 90),
+                    millis(latencies, 99), millis(latencies, 99.9), latencies.getMaxValue() / 1000.0);
+            // full distribution for plotting, in milliseconds
+            try (PrintStream out = new PrintStream(directory.resolve(entry.getKey() + ".hgrm").toFile())) {
+                latencies.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        return report;
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static Map<String, Integer> mix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.split("=");
+            weights.put(nameAndWeight[0].trim(), Integer.parseInt(nameAndWeight[1].trim()));
+        }
+        return weights;
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json(body)))
+                .build();
+    }
+
+    private byte[] json(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String nextEmail() {
+        return "load-" + runId + "-" + sequence.incrementAndGet() + "@example.com";
+    }
+
+    /**
+     * @param skew 1 picks every id alike, higher favours the first ids: at 3 about half the picks land
+     *             on the first 10%
+     */
+    private static Integer randomOf(List<Integer> ids, double skew) {
+        return ids.get((int) (ids.size() * Math.pow(ThreadLocalRandom.current().nextDouble(), skew)));
+    }
+}
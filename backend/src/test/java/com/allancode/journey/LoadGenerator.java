@@ -0,0 +1,112 @@
+package com.allancode.journey;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-model load: requests start on a fixed schedule whether or not earlier ones have answered,
+ * and each latency is measured from the time the request was due, not from when it was sent. A
+ * server that stalls therefore shows up in the percentiles instead of quietly slowing the load down
+ * (coordinated omission).
+ */
+final class LoadGenerator {
+    // 1 µs to 1 min at three significant digits
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient httpClient;
+    private final List<Route> routes;
+    private final int totalWeight;
+    private final Random random;
+
+    LoadGenerator(HttpClient httpClient, List<Route> routes, long seed) {
+        this.httpClient = httpClient;
+        this.routes = routes;
+        this.totalWeight = routes.stream().mapToInt(Route::weight).sum();
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sends {@code ratePerSecond} requests a second for warmup plus duration, records only those due
+     * after the warmup, and waits for every response.
+     */
+    Map<String, RouteResult> run(double ratePerSecond, Duration warmup, Duration duration, Duration timeout) {
+        Map<Route, RouteResult> results = new LinkedHashMap<>();
+        for (Route route : routes) {
+            results.put(route, new RouteResult(new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3), new LongAdder()));
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Route route = pick();
+            RouteResult result = due >= measureFrom ? results.get(route) : null;
+            HttpRequest request = route.request().get();
+            inFlight.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((response, error) -> {
+                        if (result == null) {
+                            return;
+                        }
+                        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+                        result.latencies().recordValue(Math.min(Math.max(latency, 1), HIGHEST_LATENCY_MICROS));
+                        if (error != null || response.statusCode() >= 400) {
+                            result.errors().increment();
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(error -> null)
+                .join();
+        Map<String, RouteResult> byName = new LinkedHashMap<>();
+        results.forEach((route, result) -> byName.put(route.name(), result));
+        return byName;
+    }
+
+    private Route pick() {
+        int ticket = random.nextInt(totalWeight);
+        for (Route route : routes) {
+            ticket -= route.weight();
+            if (ticket < 0) {
+                return route;
+            }
+        }
+        throw new IllegalStateException("no route with a positive weight");
+    }
+
+    /**
+     * @param request builds the next request; called on the scheduling thread, so it must not block
+     */
+    record Route(String name, int weight, Supplier<HttpRequest> request) {
+    }
+
+    /**
+     * Latencies in microseconds, errors are failed requests and responses with status 400 or above.
+     */
+    record RouteResult(Histogram latencies, LongAdder errors) {
+    }
+}